@@ -1,21 +1,89 @@
 package ru.yandex.practicum.tasktracker.client;
 
 import ru.yandex.practicum.tasktracker.manager.exception.HttpRequestSendException;
+import ru.yandex.practicum.tasktracker.server.KVBatchFormat;
+import ru.yandex.practicum.tasktracker.server.KVServer;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class KVTaskClient {
 
+    private static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
     private final String url;
+    private final Duration requestTimeout;
+    private final HttpClient client;
     private final String token;
 
+    /**
+     * Creates a client for the keys shared by all clients without their own token
+     * @param url
+     */
     public KVTaskClient(String url) {
+        this(url, HttpClient.Version.HTTP_1_1, DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    /**
+     * Creates a client for the keys saved earlier with the given token
+     * @param url
+     * @param token token returned by getToken of the client that registered
+     */
+    public KVTaskClient(String url, String token) {
+        this(url, token, HttpClient.Version.HTTP_1_1, DEFAULT_CONNECT_TIMEOUT, DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    /**
+     * Creates a client for the shared keys that keeps one connection pool for all requests to the server
+     * @param url
+     * @param version HTTP_2 falls back to HTTP/1.1 if the server does not support it
+     * @param connectTimeout
+     * @param requestTimeout
+     */
+    public KVTaskClient(String url, HttpClient.Version version, Duration connectTimeout, Duration requestTimeout) {
+        this(url, KVServer.DEFAULT_TOKEN, version, connectTimeout, requestTimeout);
+    }
+
+    private KVTaskClient(String url, String token, HttpClient.Version version, Duration connectTimeout,
+                         Duration requestTimeout) {
         this.url = url;
-        token = register();
+        this.requestTimeout = requestTimeout;
+        client = HttpClient.newBuilder()
+                .version(version)
+                .connectTimeout(connectTimeout)
+                .build();
+        this.token = token == null ? register() : token;
+    }
+
+    /**
+     * Registers a new token on the server and creates a client for its keys.
+     * The token should be unregistered when its keys are no longer needed
+     * @param url
+     * @return client with a new token without keys
+     */
+    public static KVTaskClient register(String url) {
+        return new KVTaskClient(url, null, HttpClient.Version.HTTP_1_1, DEFAULT_CONNECT_TIMEOUT,
+                DEFAULT_REQUEST_TIMEOUT);
+    }
+
+    /**
+     * Returns the token of the client. Every registration gets its own token with its own keys
+     * @return token
+     */
+    public String getToken() {
+        return token;
     }
 
     /**
@@ -30,9 +98,9 @@ public class KVTaskClient {
             HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofString(value);
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(uri)
+                    .timeout(requestTimeout)
                     .POST(body)
                     .build();
-            HttpClient client = HttpClient.newHttpClient();
             client.send(request, HttpResponse.BodyHandlers.ofString());
         } catch (IOException | InterruptedException | IllegalArgumentException e) {
             throw new HttpRequestSendException("An error occurred while executing the save manager state request", e);
@@ -50,9 +118,9 @@ public class KVTaskClient {
 
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(uri)
+                    .timeout(requestTimeout)
                     .GET()
                     .build();
-            HttpClient client = HttpClient.newHttpClient();
             HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
 
             return response.body();
@@ -61,20 +129,302 @@ public class KVTaskClient {
         }
     }
 
+    /**
+     * Saves the state of the task manager via a POST request /save/<key>?API_TOKEN=
+     * only if nobody has changed it since it was loaded with the expected version
+     * @param key
+     * @param value
+     * @param expectedVersion version returned by loadVersioned, 0 if the key must have no state
+     * @return true if the state was saved, false if the key has another version
+     */
+    public boolean put(String key, String value, long expectedVersion) {
+        try {
+            URI uri = URI.create(url + "/save/" + key + "/?API_TOKEN=" + token);
+
+            HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofString(value);
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(uri)
+                    .timeout(requestTimeout)
+                    .header("If-Match", "\"" + expectedVersion + "\"")
+                    .POST(body)
+                    .build();
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() == 409) {
+                return false;
+            }
+            if (response.statusCode() != 200) {
+                throw new HttpRequestSendException("The server did not save the manager state, response code "
+                        + response.statusCode());
+            }
+
+            return true;
+        } catch (IOException | InterruptedException | IllegalArgumentException e) {
+            throw new HttpRequestSendException("An error occurred while executing the save manager state request", e);
+        }
+    }
+
+    /**
+     * Returns the state of the task manager with its version via a GET request /load/<key>?API_TOKEN=
+     * @param key
+     * @return state with its version, an empty state with version 0 if the key has no state
+     * @throws HttpRequestSendException if the request fails or the server does not return the state with its version
+     */
+    public VersionedValue loadVersioned(String key) {
+        try {
+            URI uri = URI.create(url + "/load/" + key + "/?API_TOKEN=" + token);
+
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(uri)
+                    .timeout(requestTimeout)
+                    .GET()
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+            // only a missing key has version 0, since a save expecting it creates the key
+            if (response.statusCode() == 404) {
+                return new VersionedValue("", 0);
+            }
+            String entityTag = response.headers().firstValue("ETag").orElse(null);
+            if (response.statusCode() != 200 || entityTag == null) {
+                throw new HttpRequestSendException("The server did not return the manager state, response code "
+                        + response.statusCode());
+            }
+
+            return new VersionedValue(response.body(), Long.parseLong(entityTag.replace("\"", "")));
+        } catch (IOException | InterruptedException | IllegalArgumentException e) {
+            throw new HttpRequestSendException("An error occurred while executing a manager state restore request", e);
+        }
+    }
+
+    /**
+     * Deletes the state of the task manager via a DELETE request /delete/<key>?API_TOKEN=
+     * @param key
+     */
+    public void delete(String key) {
+        try {
+            URI uri = URI.create(url + "/delete/" + key + "/?API_TOKEN=" + token);
+
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(uri)
+                    .timeout(requestTimeout)
+                    .DELETE()
+                    .build();
+            client.send(request, HttpResponse.BodyHandlers.discarding());
+        } catch (IOException | InterruptedException | IllegalArgumentException e) {
+            throw new HttpRequestSendException("An error occurred while executing the delete manager state request", e);
+        }
+    }
+
+    /**
+     * Saves several states of the task manager at once via a POST request /save-batch?API_TOKEN=
+     * @param values states by keys, a null state deletes the key
+     */
+    public void putAll(Map<String, String> values) {
+        putAll(values, Map.of());
+    }
+
+    /**
+     * Saves several states of the task manager at once via a POST request /save-batch?API_TOKEN=
+     * only if nobody has changed any of them since they were loaded with the expected versions
+     * @param values states by keys, a null state deletes the key
+     * @param expectedVersions versions returned by loadAllVersioned or a previous save by keys,
+     *                         0 if the key must have no state. Keys without a version are saved regardless of it
+     * @return new versions by keys, 0 for deleted keys, or null if a key has another version and nothing was saved
+     */
+    public Map<String, Long> putAll(Map<String, String> values, Map<String, Long> expectedVersions) {
+        try {
+            HttpResponse<byte[]> response = client.send(createSaveBatchRequest(values, expectedVersions),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            return readVersions(response);
+        } catch (IOException | InterruptedException | IllegalArgumentException e) {
+            throw new HttpRequestSendException("An error occurred while executing the save manager state request", e);
+        }
+    }
+
+    /**
+     * Saves several states of the task manager at once via a POST request /save-batch?API_TOKEN=
+     * without waiting for the response
+     * @param values states by keys, a null state deletes the key
+     * @return future completed when the server has saved the states
+     */
+    public CompletableFuture<Void> putAllAsync(Map<String, String> values) {
+        return putAllAsync(values, Map.of()).thenApply(versions -> null);
+    }
+
+    /**
+     * Saves several states of the task manager at once via a POST request /save-batch?API_TOKEN=
+     * only if nobody has changed any of them since they were loaded with the expected versions,
+     * without waiting for the response
+     * @param values states by keys, a null state deletes the key
+     * @param expectedVersions versions by keys as for putAll
+     * @return future of the new versions by keys, completed with null if a key has another version
+     */
+    public CompletableFuture<Map<String, Long>> putAllAsync(Map<String, String> values,
+                                                            Map<String, Long> expectedVersions) {
+        HttpRequest request;
+        try {
+            request = createSaveBatchRequest(values, expectedVersions);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(
+                    new HttpRequestSendException("An error occurred while executing the save manager state request", e));
+        }
+
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, e) -> {
+                    if (e != null) {
+                        throw new HttpRequestSendException(
+                                "An error occurred while executing the save manager state request", e);
+                    }
+                    try {
+                        return readVersions(response);
+                    } catch (IOException ioException) {
+                        throw new HttpRequestSendException(
+                                "An error occurred while executing the save manager state request", ioException);
+                    }
+                });
+    }
+
+    /**
+     * Returns several states of the task manager at once via a POST request /load-batch?API_TOKEN=
+     * @param keys
+     * @return states by keys, keys without a state are missing
+     */
+    public Map<String, String> loadAll(Collection<String> keys) {
+        Map<String, String> values = new LinkedHashMap<>();
+        loadAllVersioned(keys).forEach((key, value) -> values.put(key, value.getValue()));
+        return values;
+    }
+
+    /**
+     * Returns several states of the task manager with their versions at once
+     * via a POST request /load-batch?API_TOKEN=
+     * @param keys
+     * @return states with their versions by keys, keys without a state are missing
+     * @throws HttpRequestSendException if the request fails or the token is not registered
+     */
+    public Map<String, VersionedValue> loadAllVersioned(Collection<String> keys) {
+        try {
+            URI uri = URI.create(url + "/load-batch?API_TOKEN=" + token);
+
+            HttpRequest.BodyPublisher body = HttpRequest.BodyPublishers.ofByteArray(KVBatchFormat.writeKeys(keys));
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(uri)
+                    .timeout(requestTimeout)
+                    .header("Content-Type", KVBatchFormat.CONTENT_TYPE)
+                    .POST(body)
+                    .build();
+            HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            try (InputStream batch = response.body()) {
+                if (response.statusCode() != 200) {
+                    throw new HttpRequestSendException("The server did not return the manager states, response code "
+                            + response.statusCode());
+                }
+
+                Map<String, VersionedValue> values = new LinkedHashMap<>();
+                KVBatchFormat.readValues(batch).forEach((key, entry) -> values.put(key,
+                        new VersionedValue(new String(entry.getValue(), StandardCharsets.UTF_8), entry.getVersion())));
+                return values;
+            }
+        } catch (IOException | InterruptedException | IllegalArgumentException e) {
+            throw new HttpRequestSendException("An error occurred while executing a manager state restore request", e);
+        }
+    }
+
+    /**
+     * Unregisters the token of the client via a DELETE request /unregister?API_TOKEN=,
+     * which deletes all its keys
+     */
+    public void unregister() {
+        try {
+            URI uri = URI.create(url + "/unregister?API_TOKEN=" + token);
+
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(uri)
+                    .timeout(requestTimeout)
+                    .DELETE()
+                    .build();
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 200) {
+                throw new HttpRequestSendException("The server did not unregister the token, response code "
+                        + response.statusCode());
+            }
+        } catch (IOException | InterruptedException | IllegalArgumentException e) {
+            throw new HttpRequestSendException("An error occurred while executing the token unregistration request",
+                    e);
+        }
+    }
+
+    private HttpRequest createSaveBatchRequest(Map<String, String> values, Map<String, Long> expectedVersions) {
+        URI uri = URI.create(url + "/save-batch?API_TOKEN=" + token);
+
+        Map<String, KVBatchFormat.Entry> entries = new LinkedHashMap<>();
+        values.forEach((key, value) -> entries.put(key, new KVBatchFormat.Entry(
+                value == null ? null : value.getBytes(StandardCharsets.UTF_8),
+                expectedVersions.getOrDefault(key, KVBatchFormat.ANY_VERSION))));
+
+        return HttpRequest.newBuilder()
+                .uri(uri)
+                .timeout(requestTimeout)
+                .header("Content-Type", KVBatchFormat.CONTENT_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(KVBatchFormat.writeValues(entries)))
+                .build();
+    }
+
+    /*
+     * Returns null if the server has not saved the batch because of a version conflict
+     */
+    private static Map<String, Long> readVersions(HttpResponse<byte[]> response) throws IOException {
+        if (response.statusCode() == 409) {
+            return null;
+        }
+        if (response.statusCode() != 200) {
+            throw new HttpRequestSendException("The server did not save the manager state, response code "
+                    + response.statusCode());
+        }
+
+        return KVBatchFormat.readVersions(new ByteArrayInputStream(response.body()));
+    }
+
     private String register() {
         try {
             URI uri = URI.create(url + "/register/");
 
             HttpRequest request = HttpRequest.newBuilder()
                     .uri(uri)
+                    .timeout(requestTimeout)
                     .GET()
                     .build();
-            HttpClient client = HttpClient.newHttpClient();
             HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new HttpRequestSendException("The server did not register a token, response code "
+                        + response.statusCode());
+            }
 
             return response.body();
         } catch (IOException | InterruptedException | IllegalArgumentException e) {
             throw new HttpRequestSendException("An error occurred while executing the token registration request", e);
         }
     }
+
+    /**
+     * State of the task manager with the version of its last save
+     */
+    public static class VersionedValue {
+
+        private final String value;
+        private final long version;
+
+        public VersionedValue(String value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
 }
@@ -0,0 +1,251 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import ru.yandex.practicum.tasktracker.model.Task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Task history in the form of a doubly linked list kept in parallel arrays.
+ * Tasks live in slots, the links between slots are int indexes, and freed slots are reused via a free list.
+ * Task ids are mapped to slots by an open addressing table of ints, so ids are never boxed
+ * and a repeated view of a task only relinks its slot without allocating anything.
+ * When the history is full, the least recently viewed task is evicted - in O(1)
+ */
+public class CompactHistoryManager implements HistoryManager {
+
+    private static final int NO_SLOT = -1;
+    private static final int INITIAL_SLOTS = 16;
+
+    private final int capacity;
+
+    private Task[] items;
+    private int[] prev;
+    private int[] next;
+    private int first = NO_SLOT;
+    private int last = NO_SLOT;
+    private int freeSlot = NO_SLOT;
+    private int usedSlots;
+    private int size;
+
+    private int[] tableIds;
+    private int[] tableSlots;
+
+    /**
+     * Creates a history without a size limit
+     */
+    public CompactHistoryManager() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a history that keeps only the last viewed tasks
+     * @param capacity maximum number of tasks in the history
+     */
+    public CompactHistoryManager(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive");
+        }
+        this.capacity = capacity;
+
+        int slots = Math.min(capacity, INITIAL_SLOTS);
+        items = new Task[slots];
+        prev = new int[slots];
+        next = new int[slots];
+        createTable(INITIAL_SLOTS * 2);
+    }
+
+    @Override
+    public void add(Task task) {
+        int slot = findSlot(task.getId());
+        if (slot != NO_SLOT) {
+            items[slot] = task;
+            unlink(slot);
+            linkLast(slot);
+            return;
+        }
+
+        if (size == capacity) {
+            remove(items[first].getId());
+        }
+
+        slot = allocateSlot();
+        items[slot] = task;
+        linkLast(slot);
+        putSlot(task.getId(), slot);
+        size++;
+    }
+
+    @Override
+    public void replace(Task task) {
+        int slot = findSlot(task.getId());
+        if (slot != NO_SLOT) {
+            items[slot] = task;
+        }
+    }
+
+    @Override
+    public void remove(int taskId) {
+        int slot = removeSlot(taskId);
+        if (slot == NO_SLOT) {
+            return;
+        }
+
+        unlink(slot);
+        items[slot] = null;
+        next[slot] = freeSlot;
+        freeSlot = slot;
+        size--;
+    }
+
+    @Override
+    public void removeAll(Set<Integer> taskIds) {
+        taskIds.forEach(this::remove);
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        final List<Task> history = new ArrayList<>(size);
+
+        for (int slot = first; slot != NO_SLOT; slot = next[slot]) {
+            history.add(items[slot]);
+        }
+
+        return history;
+    }
+
+    @Override
+    public List<Task> getHistory(int offset, int limit) {
+        InMemoryHistoryManager.checkPage(offset, limit);
+        final List<Task> history = new ArrayList<>(Math.min(limit, Math.max(size - offset, 0)));
+
+        int slot = first;
+        for (int i = 0; i < offset && slot != NO_SLOT; i++) {
+            slot = next[slot];
+        }
+        for (; slot != NO_SLOT && history.size() < limit; slot = next[slot]) {
+            history.add(items[slot]);
+        }
+
+        return history;
+    }
+
+    private int allocateSlot() {
+        if (freeSlot != NO_SLOT) {
+            int slot = freeSlot;
+            freeSlot = next[slot];
+            return slot;
+        }
+
+        if (usedSlots == items.length) {
+            int slots = (int) Math.min(capacity, items.length * 2L);
+            items = Arrays.copyOf(items, slots);
+            prev = Arrays.copyOf(prev, slots);
+            next = Arrays.copyOf(next, slots);
+        }
+        return usedSlots++;
+    }
+
+    private void linkLast(int slot) {
+        prev[slot] = last;
+        next[slot] = NO_SLOT;
+        if (last == NO_SLOT) {
+            first = slot;
+        } else {
+            next[last] = slot;
+        }
+        last = slot;
+    }
+
+    private void unlink(int slot) {
+        int prevSlot = prev[slot];
+        int nextSlot = next[slot];
+
+        if (prevSlot == NO_SLOT) {
+            first = nextSlot;
+        } else {
+            next[prevSlot] = nextSlot;
+        }
+
+        if (nextSlot == NO_SLOT) {
+            last = prevSlot;
+        } else {
+            prev[nextSlot] = prevSlot;
+        }
+    }
+
+    private void createTable(int length) {
+        tableIds = new int[length];
+        tableSlots = new int[length];
+        Arrays.fill(tableSlots, NO_SLOT);
+    }
+
+    private int hash(int id) {
+        int hash = id * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (tableIds.length - 1);
+    }
+
+    private int findSlot(int id) {
+        for (int i = hash(id); tableSlots[i] != NO_SLOT; i = (i + 1) & (tableIds.length - 1)) {
+            if (tableIds[i] == id) {
+                return tableSlots[i];
+            }
+        }
+        return NO_SLOT;
+    }
+
+    private void putSlot(int id, int slot) {
+        // the table is kept at most half full, so that probe sequences stay short
+        if ((size + 1) * 2 > tableIds.length) {
+            int[] oldIds = tableIds;
+            int[] oldSlots = tableSlots;
+            createTable(tableIds.length * 2);
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldSlots[i] != NO_SLOT) {
+                    insert(oldIds[i], oldSlots[i]);
+                }
+            }
+        }
+        insert(id, slot);
+    }
+
+    private void insert(int id, int slot) {
+        int i = hash(id);
+        while (tableSlots[i] != NO_SLOT) {
+            i = (i + 1) & (tableIds.length - 1);
+        }
+        tableIds[i] = id;
+        tableSlots[i] = slot;
+    }
+
+    /*
+     * Deletes by shifting the following entries back instead of leaving tombstones,
+     * so lookups never slow down after many removals
+     */
+    private int removeSlot(int id) {
+        int mask = tableIds.length - 1;
+        int i = hash(id);
+        while (tableSlots[i] != NO_SLOT && tableIds[i] != id) {
+            i = (i + 1) & mask;
+        }
+        if (tableSlots[i] == NO_SLOT) {
+            return NO_SLOT;
+        }
+
+        int slot = tableSlots[i];
+        for (int j = (i + 1) & mask; tableSlots[j] != NO_SLOT; j = (j + 1) & mask) {
+            int home = hash(tableIds[j]);
+            boolean isReachable = i < j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!isReachable) {
+                tableIds[i] = tableIds[j];
+                tableSlots[i] = tableSlots[j];
+                i = j;
+            }
+        }
+        tableSlots[i] = NO_SLOT;
+
+        return slot;
+    }
+}
@@ -0,0 +1,563 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import ru.yandex.practicum.tasktracker.manager.exception.TaskIntersectionException;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.SubTask;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+import java.time.LocalDateTime;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread-safe task manager.
+ * Tasks are kept in concurrent maps, so reads and changes of unrelated tasks do not block each other.
+ * Changes of an epic and its subtasks are serialized by a lock from a fixed set of locks chosen by the epic id.
+ * Execution time of all tasks is checked for intersection under a single schedule lock.
+ * Views are posted to a lock-free queue and drained into the history in batches under the history lock,
+ * so readers never wait for the history. A drained view adds the current version of the task,
+ * and a view of a task deleted meanwhile is dropped.
+ * Epics change along with their subtasks, so they are returned as snapshots copied under the epic lock.
+ * Locks are always taken in the order: epic locks by index, schedule lock, history lock
+ */
+public class ConcurrentTaskManager implements TaskManager {
+
+    private static final int EPIC_LOCK_COUNT = 64;
+    private static final int VIEW_DRAIN_THRESHOLD = 64;
+
+    private final AtomicInteger nextTaskId = new AtomicInteger();
+    private final HistoryManager historyManager = Managers.getDefaultHistory();
+    private final UserHistories userHistories = Managers.getUserHistories();
+
+    private final Map<Integer, Task> tasks = new ConcurrentHashMap<>();
+    private final Map<Integer, Epic> epics = new ConcurrentHashMap<>();
+    private final Map<Integer, SubTask> subTasks = new ConcurrentHashMap<>();
+
+    /*
+     * Tasks are ordered by the start time they had when they were scheduled, because callers change
+     * the start time of a task in place before updating it, and a sorted map cannot find an entry whose key changed
+     */
+    private final NavigableMap<ScheduleKey, Task> prioritizedTasks = new ConcurrentSkipListMap<>();
+    private final Map<Integer, ScheduleKey> scheduleKeys = new HashMap<>();
+    private final Set<Task> prioritizedView = new AbstractSet<>() {
+        @Override
+        public Iterator<Task> iterator() {
+            return Collections.unmodifiableCollection(prioritizedTasks.values()).iterator();
+        }
+
+        @Override
+        public int size() {
+            return prioritizedTasks.size();
+        }
+    };
+    private final TimeSlotIndex timeSlots = new TimeSlotIndex();
+
+    private final Lock[] epicLocks = new Lock[EPIC_LOCK_COUNT];
+    private final Lock scheduleLock = new ReentrantLock();
+    private final Lock historyLock = new ReentrantLock();
+
+    private final Queue<Integer> pendingViews = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingViewCount = new AtomicInteger();
+
+    public ConcurrentTaskManager() {
+        for (int i = 0; i < EPIC_LOCK_COUNT; i++) {
+            epicLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory() {
+        historyLock.lock();
+        try {
+            drainViews();
+            return historyManager.getHistory();
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory(int offset, int limit) {
+        historyLock.lock();
+        try {
+            drainViews();
+            return historyManager.getHistory(offset, limit);
+        } finally {
+            historyLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Task> getHistory(String user, int offset, int limit) {
+        return userHistories.getHistory(user, offset, limit);
+    }
+
+    @Override
+    public List<Task> getTasks() {
+        return new ArrayList<>(tasks.values());
+    }
+
+    @Override
+    public List<Epic> getEpics() {
+        List<Epic> snapshots = new ArrayList<>(epics.size());
+        for (Epic epic : epics.values()) {
+            Epic snapshot = snapshot(epic);
+            if (snapshot != null) {
+                snapshots.add(snapshot);
+            }
+        }
+        return snapshots;
+    }
+
+    @Override
+    public List<SubTask> getSubTasks() {
+        return new ArrayList<>(subTasks.values());
+    }
+
+    @Override
+    public List<SubTask> getSubTasksByEpic(int id) {
+        Lock lock = getEpicLock(id);
+        lock.lock();
+        try {
+            return epics.get(id).getSubTasks();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Task findTaskById(int id) {
+        Task task = tasks.get(id);
+        if (task == null) {
+            task = epics.get(id);
+        }
+        if (task == null) {
+            task = subTasks.get(id);
+        }
+        return task;
+    }
+
+    @Override
+    public Task getTaskById(int id) {
+        return addToHistory(tasks, id);
+    }
+
+    @Override
+    public Epic getEpicById(int id) {
+        return snapshot(addToHistory(epics, id));
+    }
+
+    @Override
+    public SubTask getSubTaskById(int id) {
+        return addToHistory(subTasks, id);
+    }
+
+    @Override
+    public Task getTaskById(int id, String user) {
+        return user == null ? getTaskById(id) : userHistories.add(user, id, tasks::get);
+    }
+
+    @Override
+    public Epic getEpicById(int id, String user) {
+        return user == null ? getEpicById(id) : snapshot(userHistories.add(user, id, epics::get));
+    }
+
+    @Override
+    public SubTask getSubTaskById(int id, String user) {
+        return user == null ? getSubTaskById(id) : userHistories.add(user, id, subTasks::get);
+    }
+
+    @Override
+    public void deleteTasks() {
+        tasks.keySet().forEach(this::deleteTaskById);
+    }
+
+    @Override
+    public void deleteEpics() {
+        epics.keySet().forEach(this::deleteEpicById);
+    }
+
+    @Override
+    public void deleteSubTasks() {
+        subTasks.keySet().forEach(this::deleteSubTaskById);
+    }
+
+    @Override
+    public void deleteTaskById(int id) {
+        Task task;
+
+        scheduleLock.lock();
+        try {
+            task = tasks.remove(id);
+            if (task == null) {
+                return;
+            }
+            removeFromSchedule(task);
+        } finally {
+            scheduleLock.unlock();
+        }
+
+        removeFromHistory(id);
+    }
+
+    @Override
+    public void deleteEpicById(int id) {
+        Lock lock = getEpicLock(id);
+        lock.lock();
+        try {
+            Epic epic = epics.remove(id);
+            if (epic == null) {
+                return;
+            }
+
+            List<SubTask> epicSubTasks = epic.getSubTasks();
+            scheduleLock.lock();
+            try {
+                for (SubTask subTask : epicSubTasks) {
+                    subTasks.remove(subTask.getId());
+                    removeFromSchedule(subTask);
+                }
+            } finally {
+                scheduleLock.unlock();
+            }
+
+            removeFromHistory(id);
+            epicSubTasks.forEach(subTask -> removeFromHistory(subTask.getId()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteSubTaskById(int id) {
+        while (true) {
+            SubTask subTask = subTasks.get(id);
+            if (subTask == null) {
+                return;
+            }
+
+            int epicId = subTask.getEpic().getId();
+            Lock lock = getEpicLock(epicId);
+            lock.lock();
+            try {
+                // the subtask could be changed or moved to another epic before the lock was taken
+                if (subTasks.get(id) != subTask || subTask.getEpic().getId() != epicId) {
+                    continue;
+                }
+
+                scheduleLock.lock();
+                try {
+                    subTasks.remove(id);
+                    removeFromSchedule(subTask);
+                } finally {
+                    scheduleLock.unlock();
+                }
+
+                epics.get(epicId).removeSubTask(subTask);
+                removeFromHistory(id);
+                return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void createTask(Task task) {
+        task.setId(nextTaskId.incrementAndGet());
+
+        scheduleLock.lock();
+        try {
+            addToSchedule(task);
+            tasks.put(task.getId(), task);
+        } finally {
+            scheduleLock.unlock();
+        }
+    }
+
+    @Override
+    public void createEpic(Epic epic) {
+        epic.setId(nextTaskId.incrementAndGet());
+        epics.put(epic.getId(), epic);
+    }
+
+    @Override
+    public void createSubTask(SubTask subTask) {
+        subTask.setId(nextTaskId.incrementAndGet());
+
+        int epicId = subTask.getEpic().getId();
+        Lock lock = getEpicLock(epicId);
+        lock.lock();
+        try {
+            // the epic is checked before the subtask is scheduled, so that it is not left without an epic
+            Epic epic = Objects.requireNonNull(epics.get(epicId), "Epic not found");
+
+            scheduleLock.lock();
+            try {
+                addToSchedule(subTask);
+                subTasks.put(subTask.getId(), subTask);
+            } finally {
+                scheduleLock.unlock();
+            }
+
+            epic.addSubTask(subTask);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void updateTask(Task task) {
+        Task previous;
+
+        scheduleLock.lock();
+        try {
+            previous = tasks.get(task.getId());
+            addToSchedule(task);
+            tasks.put(task.getId(), task);
+        } finally {
+            scheduleLock.unlock();
+        }
+
+        if (previous != null && previous != task) {
+            replaceInHistory(task);
+        }
+    }
+
+    @Override
+    public void updateEpic(Epic epic) {
+        Lock lock = getEpicLock(epic.getId());
+        lock.lock();
+        try {
+            Epic previous = epics.put(epic.getId(), epic);
+            if (previous != null && previous != epic) {
+                replaceInHistory(epic);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void updateSubTask(SubTask subTask) {
+        int epicId = subTask.getEpic().getId();
+
+        while (true) {
+            SubTask previous = subTasks.get(subTask.getId());
+            int previousEpicId = previous == null ? epicId : previous.getEpic().getId();
+
+            // the locks are ordered by their index, since epics with different ids can share a lock
+            int lockIndex = getEpicLockIndex(epicId);
+            int previousLockIndex = getEpicLockIndex(previousEpicId);
+            Lock firstLock = epicLocks[Math.min(lockIndex, previousLockIndex)];
+            Lock secondLock = epicLocks[Math.max(lockIndex, previousLockIndex)];
+            lockInOrder(firstLock, secondLock);
+            try {
+                // the subtask could be changed or moved to another epic before the locks were taken
+                if (subTasks.get(subTask.getId()) != previous
+                        || previous != null && previous.getEpic().getId() != previousEpicId) {
+                    continue;
+                }
+
+                // the epic is checked before the subtask is scheduled, so that it is not left without an epic
+                Epic epic = Objects.requireNonNull(epics.get(epicId), "Epic not found");
+
+                scheduleLock.lock();
+                try {
+                    addToSchedule(subTask);
+                    subTasks.put(subTask.getId(), subTask);
+                } finally {
+                    scheduleLock.unlock();
+                }
+
+                if (previous != subTask) {
+                    if (previous != null) {
+                        epics.get(previousEpicId).removeSubTask(previous);
+                        replaceInHistory(subTask);
+                    }
+                    epic.addSubTask(subTask);
+                }
+                return;
+            } finally {
+                unlockInOrder(firstLock, secondLock);
+            }
+        }
+    }
+
+    @Override
+    public Set<Task> getPrioritizedTasks() {
+        return Collections.unmodifiableSet(prioritizedView);
+    }
+
+    /*
+     * Copies the current version of an epic under its lock, so that the copy can be read and serialized
+     * while subtasks of the epic are changed. Returns null if the epic was deleted meanwhile
+     */
+    private Epic snapshot(Epic epic) {
+        if (epic == null) {
+            return null;
+        }
+
+        Lock lock = getEpicLock(epic.getId());
+        lock.lock();
+        try {
+            Epic current = epics.get(epic.getId());
+            if (current == null) {
+                return null;
+            }
+
+            Epic snapshot = new Epic();
+            snapshot.setId(current.getId());
+            snapshot.setName(current.getName());
+            snapshot.setDescription(current.getDescription());
+            current.getSubTasks().forEach(snapshot::addSubTask);
+            // the aggregates are computed now, while the subtasks cannot change
+            snapshot.getStatus();
+            return snapshot;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Lock getEpicLock(int epicId) {
+        return epicLocks[getEpicLockIndex(epicId)];
+    }
+
+    private static int getEpicLockIndex(int epicId) {
+        return Math.floorMod(epicId, EPIC_LOCK_COUNT);
+    }
+
+    private void lockInOrder(Lock firstLock, Lock secondLock) {
+        firstLock.lock();
+        if (secondLock != firstLock) {
+            secondLock.lock();
+        }
+    }
+
+    private void unlockInOrder(Lock firstLock, Lock secondLock) {
+        if (secondLock != firstLock) {
+            secondLock.unlock();
+        }
+        firstLock.unlock();
+    }
+
+    /*
+     * Must be called under the schedule lock
+     */
+    private void addToSchedule(Task task) {
+        removeFromSchedule(task);
+
+        if (timeSlots.intersects(task)) {
+            throw new TaskIntersectionException("Task execution time intersect with other tasks");
+        }
+
+        ScheduleKey key = new ScheduleKey(task.getStartTime(), task.getId());
+        prioritizedTasks.put(key, task);
+        scheduleKeys.put(task.getId(), key);
+        timeSlots.add(task);
+    }
+
+    /*
+     * Must be called under the schedule lock
+     */
+    private void removeFromSchedule(Task task) {
+        ScheduleKey key = scheduleKeys.remove(task.getId());
+        if (key != null) {
+            prioritizedTasks.remove(key);
+        }
+        timeSlots.remove(task.getId());
+    }
+
+    private <T extends Task> T addToHistory(Map<Integer, T> source, int id) {
+        T task = source.get(id);
+        if (task == null) {
+            return null;
+        }
+
+        pendingViews.add(id);
+        // the reader drains the views only if nobody holds the history lock,
+        // otherwise the views wait for the next drain
+        if (pendingViewCount.incrementAndGet() >= VIEW_DRAIN_THRESHOLD && historyLock.tryLock()) {
+            try {
+                drainViews();
+            } finally {
+                historyLock.unlock();
+            }
+        }
+
+        return task;
+    }
+
+    /*
+     * Must be called under the history lock. Views are looked up again by id,
+     * so that a task deleted after its view is not added back to the history after it was removed from there
+     */
+    private void drainViews() {
+        Integer id;
+        while ((id = pendingViews.poll()) != null) {
+            pendingViewCount.decrementAndGet();
+            Task task = findTaskById(id);
+            if (task != null) {
+                historyManager.add(task);
+            }
+        }
+    }
+
+    private void replaceInHistory(Task task) {
+        historyLock.lock();
+        try {
+            drainViews();
+            historyManager.replace(task);
+        } finally {
+            historyLock.unlock();
+        }
+        userHistories.replace(task);
+    }
+
+    private void removeFromHistory(int id) {
+        historyLock.lock();
+        try {
+            drainViews();
+            historyManager.remove(id);
+        } finally {
+            historyLock.unlock();
+        }
+        userHistories.remove(id);
+    }
+
+    private static final class ScheduleKey implements Comparable<ScheduleKey> {
+
+        private static final Comparator<ScheduleKey> ORDER = Comparator
+                .comparing((ScheduleKey key) -> key.startTime, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparingInt(key -> key.id);
+
+        private final LocalDateTime startTime;
+        private final int id;
+
+        ScheduleKey(LocalDateTime startTime, int id) {
+            this.startTime = startTime;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(ScheduleKey other) {
+            return ORDER.compare(this, other);
+        }
+    }
+}
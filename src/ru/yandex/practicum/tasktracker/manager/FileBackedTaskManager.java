@@ -8,25 +8,42 @@ import ru.yandex.practicum.tasktracker.model.Task;
 import ru.yandex.practicum.tasktracker.model.TaskType;
 import ru.yandex.practicum.tasktracker.util.DateTimeFormatterHelper;
 
-import java.io.BufferedWriter;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.Duration;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
- * Saves tasks and browsing history to a file and restores them from a file
+ * Saves tasks and browsing history to a file and restores them from a file.
+ * In the journal mode every change is appended to the journal instead of rewriting the whole file.
+ * Compaction moves the journal aside as a segment numbered by the next generation and writes a snapshot
+ * marked with this generation, so segments already contained in the snapshot are never replayed again
  */
-public class FileBackedTaskManager extends InMemoryTaskManager {
+public class FileBackedTaskManager extends InMemoryTaskManager implements AutoCloseable {
 
     private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
 
@@ -41,109 +58,117 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
     private static final int TASK_DURATION_INDEX = 6;
     private static final int TASK_EPIC_INDEX = 8;
 
+    private static final String JOURNAL_EXTENSION = ".log";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final String GENERATION_PREFIX = ",journal_generation=";
+    private static final String PUT_RECORD = "PUT";
+    private static final String DELETE_RECORD = "DELETE";
+    private static final String CLEAR_RECORD = "CLEAR";
+    private static final String VIEW_RECORD = "VIEW";
+
+    private static final CompletableFuture<Void> COMMITTED = CompletableFuture.completedFuture(null);
+
     private final Path path;
+    private final Path journalPath;
+    private final StorageMode storageMode;
 
     private final Map<Integer, Task> tasksFromFile = new HashMap<>();
 
+    private final Object compactionLock = new Object();
+    private long generation;
+    private long writtenGeneration;
+    private volatile long journalSize;
+    private volatile int journalRecordCount;
+    private GroupCommitJournal groupCommitJournal;
+
+    private HistoryFlushPolicy historyFlushPolicy = HistoryFlushPolicy.SYNC;
+    private ScheduledExecutorService historyFlusher;
+    private boolean isHistoryChanged;
+    private final Set<Integer> changedHistoryIds = new LinkedHashSet<>();
+
     protected FileBackedTaskManager() {
-        this("tasks.csv");
+        this(getResourcePath("tasks.csv"), StorageMode.SNAPSHOT);
     }
 
-    private FileBackedTaskManager(String fileName) {
-        this.path = Path.of("resources/" + fileName);
+    private FileBackedTaskManager(Path path, StorageMode storageMode) {
+        this.path = path;
+        this.journalPath = path.resolveSibling(path.getFileName() + JOURNAL_EXTENSION);
+        this.storageMode = storageMode;
     }
 
     @Override
     public Task getTaskById(int id) {
-        Task task = super.getTaskById(id);
-        save();
-        return task;
+        return persistView(() -> super.getTaskById(id));
     }
 
     @Override
     public Epic getEpicById(int id) {
-        Epic task = super.getEpicById(id);
-        save();
-        return task;
+        return persistView(() -> super.getEpicById(id));
     }
 
     @Override
     public SubTask getSubTaskById(int id) {
-        SubTask task = super.getSubTaskById(id);
-        save();
-        return task;
+        return persistView(() -> super.getSubTaskById(id));
     }
 
     @Override
     public void deleteTasks() {
-        super.deleteTasks();
-        save();
+        persist(super::deleteTasks, () -> toRecord(CLEAR_RECORD, TaskType.TASK));
     }
 
     @Override
     public void deleteEpics() {
-        super.deleteEpics();
-        save();
+        persist(super::deleteEpics, () -> toRecord(CLEAR_RECORD, TaskType.EPIC));
     }
 
     @Override
     public void deleteSubTasks() {
-        super.deleteSubTasks();
-        save();
+        persist(super::deleteSubTasks, () -> toRecord(CLEAR_RECORD, TaskType.SUBTASK));
     }
 
     @Override
     public void deleteTaskById(int id) {
-        super.deleteTaskById(id);
-        save();
+        persist(() -> super.deleteTaskById(id), () -> toRecord(DELETE_RECORD, TaskType.TASK, id));
     }
 
     @Override
     public void deleteEpicById(int id) {
-        super.deleteEpicById(id);
-        save();
+        persist(() -> super.deleteEpicById(id), () -> toRecord(DELETE_RECORD, TaskType.EPIC, id));
     }
 
     @Override
     public void deleteSubTaskById(int id) {
-        super.deleteSubTaskById(id);
-        save();
+        persist(() -> super.deleteSubTaskById(id), () -> toRecord(DELETE_RECORD, TaskType.SUBTASK, id));
     }
 
     @Override
     public void createTask(Task task) {
-        super.createTask(task);
-        save();
+        persist(() -> super.createTask(task), () -> toRecord(PUT_RECORD, task.toCsvRow()));
     }
 
     @Override
     public void createEpic(Epic epic) {
-        super.createEpic(epic);
-        save();
+        persist(() -> super.createEpic(epic), () -> toRecord(PUT_RECORD, epic.toCsvRow()));
     }
 
     @Override
     public void createSubTask(SubTask subTask) {
-        super.createSubTask(subTask);
-        save();
+        persist(() -> super.createSubTask(subTask), () -> toRecord(PUT_RECORD, subTask.toCsvRow()));
     }
 
     @Override
     public void updateTask(Task task) {
-        super.updateTask(task);
-        save();
+        persist(() -> super.updateTask(task), () -> toRecord(PUT_RECORD, task.toCsvRow()));
     }
 
     @Override
     public void updateEpic(Epic epic) {
-        super.updateEpic(epic);
-        save();
+        persist(() -> super.updateEpic(epic), () -> toRecord(PUT_RECORD, epic.toCsvRow()));
     }
 
     @Override
     public void updateSubTask(SubTask subTask) {
-        super.updateSubTask(subTask);
-        save();
+        persist(() -> super.updateSubTask(subTask), () -> toRecord(PUT_RECORD, subTask.toCsvRow()));
     }
 
     /**
@@ -152,63 +177,516 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
      * @return task manager
      */
     public static FileBackedTaskManager load(String fileName) {
-        FileBackedTaskManager taskManager = new FileBackedTaskManager(fileName);
+        return load(fileName, StorageMode.SNAPSHOT);
+    }
 
-        try {
-            List<String> lines = Files.readAllLines(taskManager.path, DEFAULT_CHARSET);
+    /**
+     * Restore manager data from a file and, in the journal mode, replay the journal next to the file
+     * @param fileName
+     * @param storageMode
+     * @return task manager
+     */
+    public static FileBackedTaskManager load(String fileName, StorageMode storageMode) {
+        return load(getResourcePath(fileName), storageMode);
+    }
 
-            if (lines.size() <= 1) {
-                return taskManager;
-            }
+    /**
+     * Restore manager data from a file outside the resources directory
+     * and, in the journal mode, replay the journal next to the file
+     * @param path
+     * @param storageMode
+     * @return task manager
+     */
+    public static FileBackedTaskManager load(Path path, StorageMode storageMode) {
+        FileBackedTaskManager taskManager = new FileBackedTaskManager(path, storageMode);
+        taskManager.restore();
+        return taskManager;
+    }
 
-            boolean isReadHistory = false;
-            for (int i = 1; i < lines.size(); i++) {
-                String line = lines.get(i);
-                if (line.isBlank()) {
-                    isReadHistory = true;
-                    continue;
-                }
+    /**
+     * Restore manager data from a file in the journal mode with group commit.
+     * Journal records are collected for the commit window or until the maximum number of records is reached
+     * and then written to disk together, each caller returns once its record is on disk
+     * @param fileName
+     * @param commitWindow
+     * @param maxCommitRecords
+     * @return task manager
+     */
+    public static FileBackedTaskManager load(String fileName, Duration commitWindow, int maxCommitRecords) {
+        return load(getResourcePath(fileName), commitWindow, maxCommitRecords);
+    }
+
+    /**
+     * Restore manager data from a file outside the resources directory in the journal mode with group commit
+     * @param path
+     * @param commitWindow
+     * @param maxCommitRecords
+     * @return task manager
+     */
+    public static FileBackedTaskManager load(Path path, Duration commitWindow, int maxCommitRecords) {
+        FileBackedTaskManager taskManager = new FileBackedTaskManager(path, StorageMode.JOURNAL);
+        taskManager.restore();
+        taskManager.groupCommitJournal = new GroupCommitJournal(taskManager.journalPath, commitWindow,
+                maxCommitRecords);
+        return taskManager;
+    }
+
+    /**
+     * Sets when changes of the browsing history are persisted
+     * @param policy
+     * @param flushInterval interval of the PERIODIC policy, ignored by other policies
+     */
+    public void setHistoryFlushPolicy(HistoryFlushPolicy policy, Duration flushInterval) {
+        stopHistoryFlusher();
+        flushHistory();
+
+        synchronized (this) {
+            historyFlushPolicy = policy;
+        }
+
+        if (policy == HistoryFlushPolicy.PERIODIC) {
+            historyFlusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "history-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
 
-                if (isReadHistory) {
-                    taskManager.restoreHistoryFromCsv(line);
-                } else {
-                    taskManager.restoreTaskFromCsv(line);
+            long interval = flushInterval.toMillis();
+            historyFlusher.scheduleWithFixedDelay(this::flushHistoryInBackground, interval, interval,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Persists the browsing history changed since the last flush
+     */
+    public void flushHistory() {
+        CompletableFuture<Void> commit = COMMITTED;
+
+        synchronized (this) {
+            if (storageMode == StorageMode.SNAPSHOT) {
+                if (isHistoryChanged) {
+                    save();
+                    isHistoryChanged = false;
+                }
+            } else {
+                Iterator<Integer> iterator = changedHistoryIds.iterator();
+                while (iterator.hasNext()) {
+                    int taskId = iterator.next();
+                    commit = persist(() -> toRecord(VIEW_RECORD, taskId));
+                    iterator.remove();
                 }
             }
+        }
+
+        awaitCommit(commit);
+    }
 
-            taskManager.nextTaskId = Collections.max(taskManager.tasksFromFile.keySet());
+    /**
+     * Persists the changed browsing history, writes pending journal records
+     * and stops the background threads of the manager
+     */
+    @Override
+    public void close() {
+        stopHistoryFlusher();
+        flushHistory();
+
+        if (groupCommitJournal != null) {
+            groupCommitJournal.close();
+        }
+    }
+
+    private void restore() {
+        try {
+            restoreFromSnapshot();
+
+            if (storageMode == StorageMode.JOURNAL) {
+                replayJournal();
+            }
         } catch (IOException e) {
             throw new ManagerSaveException("Error reading from file", e);
         }
 
-        return taskManager;
+        if (!tasksFromFile.isEmpty()) {
+            nextTaskId = Collections.max(tasksFromFile.keySet());
+        }
     }
 
+    /**
+     * Writes all tasks and browsing history to the file.
+     * In the journal mode the journal is compacted into the file
+     */
     protected void save() {
-        try (BufferedWriter writer = Files.newBufferedWriter(path, DEFAULT_CHARSET)) {
-            writer.write(FILE_HEADER);
-            writer.newLine();
-
-            String lines = Stream.of(getTasks(), getEpics(), getSubTasks())
-                    .flatMap(List::stream)
-                    .map(Task::toCsvRow)
-                    .collect(Collectors.joining(System.lineSeparator()));
-
-            writer.write(lines);
-            writer.newLine();
-
-            if (!getHistory().isEmpty()) {
-                writer.newLine();
-                writer.write(writeHistoryToCsv());
-                writer.newLine();
+        if (storageMode == StorageMode.JOURNAL) {
+            compact();
+            return;
+        }
+
+        try {
+            Files.writeString(path, toCsv(FILE_HEADER, getCsvRows(), writeHistoryToCsv(getHistory())), DEFAULT_CHARSET);
+        } catch (IOException e) {
+            throw new ManagerSaveException("Error writing to file", e);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the current state to a temporary file, atomically renames it into place
+     * and deletes the journal records contained in it.
+     * The manager is locked only while the journal is moved aside and the rows are formatted,
+     * the rows are written without the lock
+     */
+    void compact() {
+        long snapshotGeneration;
+        Path segmentPath;
+        List<String> rows;
+        String historyLine;
+
+        synchronized (this) {
+            snapshotGeneration = ++generation;
+            segmentPath = getSegmentPath(snapshotGeneration);
+
+            try {
+                if (groupCommitJournal != null) {
+                    groupCommitJournal.moveTo(segmentPath);
+                } else if (Files.exists(journalPath)) {
+                    Files.move(journalPath, segmentPath, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                generation--;
+                throw new ManagerSaveException("Error writing to file", e);
+            }
+
+            // epics change along with their subtasks, so the rows are formatted while the manager is locked
+            rows = getCsvRows();
+            historyLine = writeHistoryToCsv(getHistory());
+            changedHistoryIds.clear();
+            journalSize = 0;
+            journalRecordCount = 0;
+        }
+
+        synchronized (compactionLock) {
+            try {
+                // a newer snapshot already contains everything captured by this one
+                if (snapshotGeneration > writtenGeneration) {
+                    writeAtomically(toCsv(FILE_HEADER + GENERATION_PREFIX + snapshotGeneration, rows, historyLine));
+                    writtenGeneration = snapshotGeneration;
+                }
+                Files.deleteIfExists(segmentPath);
+            } catch (IOException e) {
+                throw new ManagerSaveException("Error writing to file", e);
+            }
+        }
+    }
+
+    /**
+     * Returns the size of the journal records written since the last compaction
+     * @return size in bytes
+     */
+    long getJournalSize() {
+        return journalSize;
+    }
+
+    /**
+     * Returns the number of the journal records written since the last compaction
+     * @return number of records
+     */
+    int getJournalRecordCount() {
+        return journalRecordCount;
+    }
+
+    private List<String> getCsvRows() {
+        return Stream.of(getTasks(), getEpics(), getSubTasks())
+                .flatMap(List::stream)
+                .map(Task::toCsvRow)
+                .collect(Collectors.toList());
+    }
+
+    private static String toCsv(String header, List<String> rows, String historyLine) {
+        String lineSeparator = System.lineSeparator();
+        StringBuilder csv = new StringBuilder(header).append(lineSeparator);
+        csv.append(String.join(lineSeparator, rows)).append(lineSeparator);
+
+        if (!historyLine.isEmpty()) {
+            csv.append(lineSeparator).append(historyLine).append(lineSeparator);
+        }
+
+        return csv.toString();
+    }
+
+    private void writeAtomically(String content) throws IOException {
+        Path tempPath = path.resolveSibling(path.getFileName() + TEMP_EXTENSION);
+
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(DEFAULT_CHARSET));
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void persist(Runnable change, Supplier<String> record) {
+        CompletableFuture<Void> commit;
+
+        synchronized (this) {
+            change.run();
+            commit = persist(record);
+        }
+
+        awaitCommit(commit);
+    }
+
+    private <T extends Task> T persistView(Supplier<T> view) {
+        T task;
+        CompletableFuture<Void> commit;
+
+        synchronized (this) {
+            task = view.get();
+
+            if (task == null) {
+                commit = COMMITTED;
+            } else if (historyFlushPolicy == HistoryFlushPolicy.SYNC) {
+                commit = persist(() -> toRecord(VIEW_RECORD, task.getId()));
+            } else {
+                markHistoryChanged(task.getId());
+                commit = COMMITTED;
+            }
+        }
+
+        awaitCommit(commit);
+        return task;
+    }
+
+    private void markHistoryChanged(int taskId) {
+        if (storageMode == StorageMode.SNAPSHOT) {
+            isHistoryChanged = true;
+        } else {
+            // the record is moved to the end, so that the records are written in the order of the last view
+            changedHistoryIds.remove(taskId);
+            changedHistoryIds.add(taskId);
+        }
+    }
+
+    private void flushHistoryInBackground() {
+        try {
+            flushHistory();
+        } catch (ManagerSaveException e) {
+            // the history stays changed and the flush is retried on the next run
+        }
+    }
+
+    private void stopHistoryFlusher() {
+        if (historyFlusher == null) {
+            return;
+        }
+
+        historyFlusher.shutdown();
+        try {
+            historyFlusher.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        historyFlusher = null;
+    }
+
+    private CompletableFuture<Void> persist(Supplier<String> record) {
+        if (storageMode == StorageMode.SNAPSHOT) {
+            // the file also contains the history, so the changed history is written along with it
+            boolean wasHistoryChanged = isHistoryChanged;
+            isHistoryChanged = false;
+            try {
+                save();
+            } catch (RuntimeException e) {
+                isHistoryChanged = wasHistoryChanged;
+                throw e;
             }
+            return COMMITTED;
+        }
+
+        byte[] bytes = (record.get() + System.lineSeparator()).getBytes(DEFAULT_CHARSET);
+        journalSize += bytes.length;
+        journalRecordCount++;
+
+        if (groupCommitJournal != null) {
+            return groupCommitJournal.append(bytes);
+        }
+
+        try {
+            Files.write(journalPath, bytes, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
         } catch (IOException e) {
             throw new ManagerSaveException("Error writing to file", e);
         }
+
+        return COMMITTED;
+    }
+
+    private void awaitCommit(CompletableFuture<Void> commit) {
+        try {
+            commit.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ManagerSaveException) {
+                throw (ManagerSaveException) e.getCause();
+            }
+            throw new ManagerSaveException("Error writing to file", e.getCause());
+        }
+    }
+
+    private String toRecord(String operation, Object... values) {
+        return Stream.concat(Stream.of(operation), Arrays.stream(values))
+                .map(Object::toString)
+                .collect(Collectors.joining(","));
+    }
+
+    private void restoreFromSnapshot() throws IOException {
+        List<String> lines = Files.readAllLines(path, DEFAULT_CHARSET);
+
+        if (!lines.isEmpty() && lines.get(0).startsWith(FILE_HEADER + GENERATION_PREFIX)) {
+            generation = Long.parseLong(lines.get(0).substring((FILE_HEADER + GENERATION_PREFIX).length()));
+            writtenGeneration = generation;
+        }
+
+        boolean isReadHistory = false;
+        for (int i = 1; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.isBlank()) {
+                isReadHistory = true;
+                continue;
+            }
+
+            if (isReadHistory) {
+                restoreHistoryFromCsv(line);
+            } else {
+                restoreTaskFromCsv(line);
+            }
+        }
+    }
+
+    private void replayJournal() throws IOException {
+        String segmentPrefix = journalPath.getFileName() + ".";
+        Map<Long, Path> segments = new TreeMap<>();
+
+        try (Stream<Path> paths = Files.list(journalPath.toAbsolutePath().getParent())) {
+            paths.filter(segmentPath -> segmentPath.getFileName().toString().startsWith(segmentPrefix))
+                    .forEach(segmentPath -> {
+                        Long segmentGeneration = parseGeneration(
+                                segmentPath.getFileName().toString().substring(segmentPrefix.length()));
+                        // other files next to the journal, such as backups, are not segments
+                        if (segmentGeneration != null) {
+                            segments.put(segmentGeneration, segmentPath);
+                        }
+                    });
+        }
+
+        long snapshotGeneration = generation;
+        for (Map.Entry<Long, Path> segment : segments.entrySet()) {
+            if (segment.getKey() <= snapshotGeneration) {
+                // the segment was not deleted after the compaction, the snapshot already contains it
+                Files.delete(segment.getValue());
+            } else {
+                replayJournalFile(segment.getValue());
+                generation = segment.getKey();
+            }
+        }
+
+        if (Files.exists(journalPath)) {
+            replayJournalFile(journalPath);
+        }
+    }
+
+    private void replayJournalFile(Path journalFilePath) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(journalFilePath, DEFAULT_CHARSET)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    replayRecord(line);
+                    journalRecordCount++;
+                }
+            }
+        }
+
+        journalSize += Files.size(journalFilePath);
+    }
+
+    /*
+     * Returns null if the suffix is not a generation number
+     */
+    private static Long parseGeneration(String suffix) {
+        if (suffix.isEmpty() || !suffix.chars().allMatch(Character::isDigit)) {
+            return null;
+        }
+
+        try {
+            return Long.parseLong(suffix);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Path getResourcePath(String fileName) {
+        return Path.of("resources/" + fileName);
+    }
+
+    private Path getSegmentPath(long segmentGeneration) {
+        return journalPath.resolveSibling(journalPath.getFileName() + "." + segmentGeneration);
+    }
+
+    private void replayRecord(String record) {
+        String[] values = record.split(",", 2);
+
+        switch (values[0]) {
+            case PUT_RECORD:
+                restoreTaskFromCsv(values[1]);
+                break;
+            case DELETE_RECORD:
+                replayDelete(values[1].split(","));
+                break;
+            case CLEAR_RECORD:
+                replayClear(TaskType.valueOf(values[1]));
+                break;
+            case VIEW_RECORD:
+                Task task = findTaskById(Integer.parseInt(values[1]));
+                if (task != null) {
+                    historyManager.add(task);
+                }
+                break;
+            default:
+                throw new ManagerSaveException("Unknown journal record: " + record);
+        }
+    }
+
+    private void replayDelete(String[] values) {
+        TaskType taskType = TaskType.valueOf(values[0]);
+        int taskId = Integer.parseInt(values[1]);
+
+        Task task = findTaskById(taskId);
+        if (task == null || task.getType() != taskType) {
+            return;
+        }
+
+        if (taskType == TaskType.EPIC) {
+            super.deleteEpicById(taskId);
+        } else if (taskType == TaskType.SUBTASK) {
+            super.deleteSubTaskById(taskId);
+        } else {
+            super.deleteTaskById(taskId);
+        }
+    }
+
+    private void replayClear(TaskType taskType) {
+        if (taskType == TaskType.EPIC) {
+            super.deleteEpics();
+        } else if (taskType == TaskType.SUBTASK) {
+            super.deleteSubTasks();
+        } else {
+            super.deleteTasks();
+        }
     }
 
-    private String writeHistoryToCsv() {
-        return getHistory().stream()
+    private static String writeHistoryToCsv(List<Task> history) {
+        return history.stream()
                 .map(Task::getId)
                 .map(Object::toString)
                 .collect(Collectors.joining(","));
@@ -241,13 +719,17 @@ public class FileBackedTaskManager extends InMemoryTaskManager {
 
         task.setDescription(values[TASK_DESCRIPTION_INDEX]);
 
-        if (task instanceof Epic) {
+        Task existingTask = findTaskById(taskId);
+        if (task instanceof Epic && existingTask instanceof Epic) {
+            // the epic is updated in place, so that it keeps its subtasks
+            existingTask.setName(task.getName());
+            existingTask.setDescription(task.getDescription());
+            task = existingTask;
+        } else if (task instanceof Epic) {
             super.updateEpic((Epic) task);
         } else if (task instanceof SubTask) {
             int epicId = Integer.parseInt(values[TASK_EPIC_INDEX]);
-            Epic epic = super.getEpicById(epicId);
-            ((SubTask) task).setEpic(epic);
-            historyManager.remove(epicId);
+            ((SubTask) task).setEpic((Epic) findTaskById(epicId));
             super.updateSubTask((SubTask) task);
         } else {
             super.updateTask(task);
@@ -0,0 +1,180 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import ru.yandex.practicum.tasktracker.manager.exception.ManagerSaveException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appends journal records in groups.
+ * Records are collected for the commit window or until the maximum number of records is reached,
+ * then they are written with a single write and fsync, and all waiting callers are released together
+ */
+class GroupCommitJournal {
+
+    private final Path path;
+    private final long commitWindowNanos;
+    private final int maxCommitRecords;
+
+    private final Object pendingLock = new Object();
+    private final Object writeLock = new Object();
+    private List<byte[]> pendingRecords = new ArrayList<>();
+    private List<CompletableFuture<Void>> pendingCommits = new ArrayList<>();
+    private long firstPendingTime;
+    private boolean isClosed;
+
+    private final Thread writer;
+
+    GroupCommitJournal(Path path, Duration commitWindow, int maxCommitRecords) {
+        this.path = path;
+        this.commitWindowNanos = commitWindow.toNanos();
+        this.maxCommitRecords = maxCommitRecords;
+
+        writer = new Thread(this::writePendingRecords, "group-commit-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Adds a record to the next group
+     * @param record
+     * @return future completed when the record is written to disk
+     */
+    CompletableFuture<Void> append(byte[] record) {
+        CompletableFuture<Void> commit = new CompletableFuture<>();
+
+        synchronized (pendingLock) {
+            if (isClosed) {
+                throw new ManagerSaveException("Journal is closed");
+            }
+
+            if (pendingRecords.isEmpty()) {
+                firstPendingTime = System.nanoTime();
+            }
+            pendingRecords.add(record);
+            pendingCommits.add(commit);
+
+            if (pendingRecords.size() == 1 || pendingRecords.size() >= maxCommitRecords) {
+                pendingLock.notifyAll();
+            }
+        }
+
+        return commit;
+    }
+
+    /**
+     * Writes the pending records without waiting for the commit window
+     */
+    void flush() {
+        synchronized (writeLock) {
+            writeBatch();
+        }
+    }
+
+    /**
+     * Writes the pending records and moves the journal file, so that new records go to a new file
+     * @param target
+     * @throws IOException
+     */
+    void moveTo(Path target) throws IOException {
+        synchronized (writeLock) {
+            writeBatch();
+            if (Files.exists(path)) {
+                Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+    }
+
+    /**
+     * Writes the pending records and stops the writer thread
+     */
+    void close() {
+        synchronized (pendingLock) {
+            isClosed = true;
+            pendingLock.notifyAll();
+        }
+
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+    }
+
+    private void writePendingRecords() {
+        while (awaitBatch()) {
+            flush();
+        }
+    }
+
+    private boolean awaitBatch() {
+        synchronized (pendingLock) {
+            try {
+                while (pendingRecords.isEmpty()) {
+                    if (isClosed) {
+                        return false;
+                    }
+                    pendingLock.wait();
+                }
+
+                long remainingNanos = firstPendingTime + commitWindowNanos - System.nanoTime();
+                while (!isClosed && pendingRecords.size() < maxCommitRecords && remainingNanos > 0) {
+                    TimeUnit.NANOSECONDS.timedWait(pendingLock, remainingNanos);
+                    remainingNanos = firstPendingTime + commitWindowNanos - System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+
+            return true;
+        }
+    }
+
+    private void writeBatch() {
+        List<byte[]> records;
+        List<CompletableFuture<Void>> commits;
+
+        synchronized (pendingLock) {
+            if (pendingRecords.isEmpty()) {
+                return;
+            }
+
+            records = pendingRecords;
+            commits = pendingCommits;
+            pendingRecords = new ArrayList<>();
+            pendingCommits = new ArrayList<>();
+        }
+
+        int size = records.stream().mapToInt(record -> record.length).sum();
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        records.forEach(buffer::put);
+        buffer.flip();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            ManagerSaveException exception = new ManagerSaveException("Error writing to file", e);
+            commits.forEach(commit -> commit.completeExceptionally(exception));
+            return;
+        }
+
+        commits.forEach(commit -> commit.complete(null));
+    }
+}
@@ -0,0 +1,22 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+/**
+ * Defines when the file-backed task manager persists changes of the browsing history
+ */
+public enum HistoryFlushPolicy {
+
+    /**
+     * The history is persisted before the task is returned
+     */
+    SYNC,
+
+    /**
+     * The history is marked as changed and persisted in the background once per flush interval
+     */
+    PERIODIC,
+
+    /**
+     * The history is marked as changed and persisted when the manager is closed
+     */
+    ON_SHUTDOWN
+}
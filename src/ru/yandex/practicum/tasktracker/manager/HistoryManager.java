@@ -13,6 +13,13 @@ public interface HistoryManager {
      */
     void add(Task task);
 
+    /**
+     * Replaces a task in the history with its new version, keeping the position of the task.
+     * Does nothing if the task is not in the history
+     * @param task
+     */
+    void replace(Task task);
+
     /**
      * Removes a task by id
      * @param taskId
@@ -30,4 +37,12 @@ public interface HistoryManager {
      * @return task history
      */
     List<Task> getHistory();
+
+    /**
+     * Returns a page of the task history, walking only the entries up to the end of the page
+     * @param offset number of the oldest views to skip
+     * @param limit maximum number of views to return
+     * @return page of the task history
+     */
+    List<Task> getHistory(int offset, int limit);
 }
@@ -3,15 +3,45 @@ package ru.yandex.practicum.tasktracker.manager;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import ru.yandex.practicum.tasktracker.client.KVTaskClient;
+import ru.yandex.practicum.tasktracker.manager.exception.HttpRequestSendException;
+import ru.yandex.practicum.tasktracker.manager.exception.ManagerSaveConflictException;
 import ru.yandex.practicum.tasktracker.model.Epic;
 import ru.yandex.practicum.tasktracker.model.SubTask;
 import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskType;
+import ru.yandex.practicum.tasktracker.server.KVServer;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Stream;
 
 /**
- * Saves tasks and browsing history on the server and restores them from the server
+ * Saves tasks and browsing history on the server and restores them from the server.
+ * Every task is stored under its own key, the ids of each type are split into buckets of 256 ids
+ * stored under their own keys, and every viewed task keeps the number of its last view under its own key,
+ * so a change uploads only the changed tasks, the buckets of their ids and their views.
+ * All changes of a save are sent in one batch request, which the server applies atomically
+ * and only if no key was changed by another manager since this manager loaded or saved it.
+ * With asynchronous saving the changes are queued and sent in the background one batch at a time,
+ * and changes of the same key made while a batch is being sent are merged, so only the latest state is sent.
+ * A batch that could not be sent is retried with a growing delay, and if all retries fail,
+ * its changes are sent again with the next batch
  */
 public class HttpTaskManager extends FileBackedTaskManager {
 
@@ -19,6 +49,11 @@ public class HttpTaskManager extends FileBackedTaskManager {
     private static final String EPICS_KEY = "epics";
     private static final String SUBTASKS_KEY = "subtasks";
     private static final String HISTORY_KEY = "history";
+    private static final String LAST_ID_KEY = "last-id";
+    private static final int BUCKET_SIZE = 256;
+    private static final int MAX_RETRY_COUNT = 3;
+    private static final long RETRY_DELAY_MILLIS = 100;
+    private static final String SUBTASKS_OF_EPIC = "\"subTasks\":\\[\\d+(,\\d+)*\\],";
 
     private final KVTaskClient client;
 
@@ -27,8 +62,39 @@ public class HttpTaskManager extends FileBackedTaskManager {
     private final Gson epicGson;
     private final Gson subTaskGson;
 
-    private HttpTaskManager(String url) {
-        client = new KVTaskClient(url);
+    /*
+     * Changes since the last save. Tasks are kept as objects,
+     * because the id of a created task is assigned after it is marked as changed
+     */
+    private final Set<Task> changedTasks = Collections.newSetFromMap(new IdentityHashMap<>());
+    // ids are assigned on creation, so the ids of created tasks are known only when they are saved
+    private final Set<Task> createdTasks = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Map<TaskType, Set<Integer>> changedIds = new EnumMap<>(TaskType.class);
+    // ids in the order of their last view since the last save
+    private final Set<Integer> viewedIds = new LinkedHashSet<>();
+    private boolean isRestoring;
+
+    // the largest id saved in the buckets and the number of the last saved view
+    private int lastId;
+    private long lastViewNumber;
+
+    /*
+     * Versions of the keys as the manager loaded or saved them last, keys without a version have no value
+     */
+    private final Map<String, Long> versions = new HashMap<>();
+
+    private final boolean isAsyncSave;
+    // changes of a failed synchronous save, which are sent again with the next save
+    private Map<String, String> unsentValues = new LinkedHashMap<>();
+    private Map<String, String> queuedValues = new LinkedHashMap<>();
+    private CompletableFuture<Void> queuedSave;
+    private CompletableFuture<Void> sendingSave;
+    private CompletableFuture<Void> failedSave;
+    private int retryCount;
+
+    private HttpTaskManager(String url, String token, boolean isAsyncSave) {
+        this.isAsyncSave = isAsyncSave;
+        client = token == null ? KVTaskClient.register(url) : new KVTaskClient(url, token);
 
         defaultGson = Managers.getDefaultGson();
         taskGson = Managers.getTaskGson(this);
@@ -37,55 +103,579 @@ public class HttpTaskManager extends FileBackedTaskManager {
     }
 
     /**
-     * Restore manager data from server
+     * Restore manager data from server, saved under the shared default token
      * @param url
      * @return task manager
      */
     public static HttpTaskManager load(String url) {
-        HttpTaskManager taskManager = new HttpTaskManager(url);
+        return load(url, false);
+    }
 
-        String tasksToJson = taskManager.client.load(TASKS_KEY);
-        String epicsToJson = taskManager.client.load(EPICS_KEY);
-        String subTasksToJson = taskManager.client.load(SUBTASKS_KEY);
-        String historyToJson = taskManager.client.load(HISTORY_KEY);
+    /**
+     * Restore manager data from server, saved under the shared default token
+     * @param url
+     * @param isAsyncSave whether changes are sent to the server in the background
+     * @return task manager
+     */
+    public static HttpTaskManager load(String url, boolean isAsyncSave) {
+        return load(url, KVServer.DEFAULT_TOKEN, isAsyncSave);
+    }
 
-        if (tasksToJson.isBlank() && epicsToJson.isBlank()) {
+    /**
+     * Restore manager data from server
+     * @param url
+     * @param token token of the manager that saved the data, null to register a new token without data
+     * @param isAsyncSave whether changes are sent to the server in the background
+     * @return task manager
+     */
+    public static HttpTaskManager load(String url, String token, boolean isAsyncSave) {
+        HttpTaskManager taskManager = new HttpTaskManager(url, token, isAsyncSave);
+
+        String lastId = taskManager.loadAll(List.of(LAST_ID_KEY)).get(LAST_ID_KEY);
+
+        if (lastId == null) {
             return taskManager;
         }
 
-        List<Task> tasks = taskManager.defaultGson.fromJson(tasksToJson, new TypeToken<List<Task>>(){}.getType());
-        tasks.forEach(taskManager::updateTask);
+        synchronized (taskManager) {
+            taskManager.isRestoring = true;
+            taskManager.lastId = Integer.parseInt(lastId);
+
+            List<String> bucketKeys = new ArrayList<>();
+            for (TaskType type : TaskType.values()) {
+                for (int bucket = 0; bucket <= getBucket(taskManager.lastId); bucket++) {
+                    bucketKeys.add(getBucketKey(type, bucket));
+                }
+            }
+            Map<String, String> buckets = taskManager.loadAll(bucketKeys);
+
+            Map<TaskType, List<Integer>> ids = new EnumMap<>(TaskType.class);
+            List<String> keys = new ArrayList<>();
+            for (TaskType type : TaskType.values()) {
+                List<Integer> typeIds = new ArrayList<>();
+                for (int bucket = 0; bucket <= getBucket(taskManager.lastId); bucket++) {
+                    typeIds.addAll(taskManager.defaultGson.fromJson(
+                            buckets.getOrDefault(getBucketKey(type, bucket), "[]"),
+                            new TypeToken<List<Integer>>(){}.getType()));
+                }
+                typeIds.forEach(id -> {
+                    keys.add(getTaskKey(type, id));
+                    keys.add(getHistoryKey(id));
+                });
+                ids.put(type, typeIds);
+            }
+            Map<String, String> tasksToJson = taskManager.loadAll(keys);
+
+            List<Task> tasks = loadTasks(TaskType.TASK, ids, tasksToJson,
+                    json -> taskManager.defaultGson.fromJson(json, Task.class));
+            tasks.forEach(taskManager::updateTask);
 
-        epicsToJson = epicsToJson.replaceFirst("\"subTasks\":\\[\\d+(,\\d+)*\\],", "");
-        List<Epic> epics = taskManager.defaultGson.fromJson(epicsToJson, new TypeToken<List<Epic>>(){}.getType());
-        epics.forEach(taskManager::updateEpic);
+            // subtasks of the epics are restored from the subtasks, which are not loaded yet
+            List<Epic> epics = loadTasks(TaskType.EPIC, ids, tasksToJson,
+                    json -> taskManager.defaultGson.fromJson(json.replaceFirst(SUBTASKS_OF_EPIC, ""), Epic.class));
+            epics.forEach(taskManager::updateEpic);
 
-        List<SubTask> subTasks = taskManager.subTaskGson.fromJson(subTasksToJson,
-                new TypeToken<List<SubTask>>(){}.getType());
-        subTasks.forEach(taskManager::updateSubTask);
+            List<SubTask> subTasks = loadTasks(TaskType.SUBTASK, ids, tasksToJson,
+                    json -> taskManager.subTaskGson.fromJson(json, SubTask.class));
+            subTasks.forEach(taskManager::updateSubTask);
 
-        List<Task> history = taskManager.taskGson.fromJson(historyToJson, new TypeToken<List<Task>>(){}.getType());
-        history.forEach(taskManager.historyManager::add);
+            // the history is replayed in the order of the views, so the history manager keeps the latest of them
+            TreeMap<Long, Task> views = new TreeMap<>();
+            Stream.of(tasks, epics, subTasks).flatMap(List::stream).forEach(task -> {
+                String viewNumber = tasksToJson.get(getHistoryKey(task.getId()));
+                if (viewNumber != null) {
+                    views.put(Long.parseLong(viewNumber), task);
+                }
+            });
+            views.values().forEach(taskManager.historyManager::add);
+            taskManager.lastViewNumber = views.isEmpty() ? 0 : views.lastKey();
 
-        taskManager.nextTaskId = Stream.of(tasks, epics, subTasks)
-                .flatMap(List::stream)
-                .map(Task::getId)
-                .max(Integer::compareTo)
-                .orElse(0);
+            taskManager.nextTaskId = Stream.of(tasks, epics, subTasks)
+                    .flatMap(List::stream)
+                    .map(Task::getId)
+                    .max(Integer::compareTo)
+                    .orElse(0);
+
+            taskManager.clearChanges();
+            taskManager.isRestoring = false;
+        }
 
         return taskManager;
     }
 
     @Override
-    protected void save() {
-        String tasks = defaultGson.toJson(getTasks());
-        String epics = epicGson.toJson(getEpics());
-        String subTasks = subTaskGson.toJson(getSubTasks());
-        String history = taskGson.toJson(getHistory());
+    public synchronized Task getTaskById(int id) {
+        markHistoryChanged(id, TaskType.TASK);
+        return super.getTaskById(id);
+    }
+
+    @Override
+    public synchronized Epic getEpicById(int id) {
+        markHistoryChanged(id, TaskType.EPIC);
+        return super.getEpicById(id);
+    }
+
+    @Override
+    public synchronized SubTask getSubTaskById(int id) {
+        markHistoryChanged(id, TaskType.SUBTASK);
+        return super.getSubTaskById(id);
+    }
+
+    @Override
+    public synchronized Task getTaskById(int id, String user) {
+        return super.getTaskById(id, user);
+    }
+
+    @Override
+    public synchronized Epic getEpicById(int id, String user) {
+        return super.getEpicById(id, user);
+    }
+
+    @Override
+    public synchronized SubTask getSubTaskById(int id, String user) {
+        return super.getSubTaskById(id, user);
+    }
+
+    @Override
+    public synchronized void deleteTasks() {
+        getTasks().forEach(this::markDeleted);
+        super.deleteTasks();
+    }
+
+    @Override
+    public synchronized void deleteEpics() {
+        getEpics().forEach(this::markDeleted);
+        getSubTasks().forEach(this::markDeleted);
+        super.deleteEpics();
+    }
+
+    @Override
+    public synchronized void deleteSubTasks() {
+        getSubTasks().forEach(this::markDeleted);
+        changedTasks.addAll(getEpics());
+        super.deleteSubTasks();
+    }
+
+    @Override
+    public synchronized void deleteTaskById(int id) {
+        markDeleted(findTaskById(id));
+        super.deleteTaskById(id);
+    }
+
+    @Override
+    public synchronized void deleteEpicById(int id) {
+        Task epic = findTaskById(id);
+        if (epic != null) {
+            markDeleted(epic);
+            getSubTasksByEpic(id).forEach(this::markDeleted);
+        }
+        super.deleteEpicById(id);
+    }
+
+    @Override
+    public synchronized void deleteSubTaskById(int id) {
+        Task subTask = findTaskById(id);
+        if (subTask instanceof SubTask) {
+            markDeleted(subTask);
+            changedTasks.add(((SubTask) subTask).getEpic());
+        }
+        super.deleteSubTaskById(id);
+    }
+
+    @Override
+    public synchronized void createTask(Task task) {
+        markCreated(task);
+        super.createTask(task);
+    }
+
+    @Override
+    public synchronized void createEpic(Epic epic) {
+        markCreated(epic);
+        super.createEpic(epic);
+    }
+
+    @Override
+    public synchronized void createSubTask(SubTask subTask) {
+        markCreated(subTask);
+        changedTasks.add(findTaskById(subTask.getEpic().getId()));
+        super.createSubTask(subTask);
+    }
+
+    @Override
+    public synchronized void updateTask(Task task) {
+        markUpdated(task);
+        super.updateTask(task);
+    }
+
+    @Override
+    public synchronized void updateEpic(Epic epic) {
+        markUpdated(epic);
+        super.updateEpic(epic);
+    }
+
+    @Override
+    public synchronized void updateSubTask(SubTask subTask) {
+        // the subtask can be moved to another epic, so both epics are changed
+        Task previous = findTaskById(subTask.getId());
+        if (previous instanceof SubTask) {
+            changedTasks.add(((SubTask) previous).getEpic());
+        }
+        changedTasks.add(findTaskById(subTask.getEpic().getId()));
+        markUpdated(subTask);
+        super.updateSubTask(subTask);
+    }
+
+    /**
+     * Uploads the tasks, lists of ids and history changed since the last save
+     * along with the changes of a previous save that could not be sent
+     * @throws HttpRequestSendException if the server is not available, then the changes are sent with the next save
+     * @throws ManagerSaveConflictException if another manager has changed one of the keys,
+     * then none of the changes is saved and the manager has to be loaded again
+     */
+    @Override
+    protected synchronized void save() {
+        if (isRestoring) {
+            return;
+        }
+
+        for (Task task : createdTasks) {
+            if (findTaskById(task.getId()) == task) {
+                markIdChanged(task.getType(), task.getId());
+            }
+        }
+
+        Map<Integer, TaskType> changedTaskIds = new LinkedHashMap<>();
+        for (Task task : changedTasks) {
+            if (task != null) {
+                changedTaskIds.put(task.getId(), task.getType());
+            }
+        }
+
+        Map<String, String> values = new LinkedHashMap<>();
+        for (int id : viewedIds) {
+            if (getType(id) != null) {
+                values.put(getHistoryKey(id), String.valueOf(++lastViewNumber));
+            }
+        }
+
+        for (Map.Entry<Integer, TaskType> entry : changedTaskIds.entrySet()) {
+            Task task = findTaskById(entry.getKey());
+            // a deleted task is saved as null, which deletes its key and its view
+            values.put(getTaskKey(entry.getValue(), entry.getKey()), task == null ? null : toJson(task));
+            if (task == null) {
+                values.put(getHistoryKey(entry.getKey()), null);
+            }
+        }
+
+        for (Map.Entry<TaskType, Set<Integer>> entry : changedIds.entrySet()) {
+            Set<Integer> buckets = new TreeSet<>();
+            entry.getValue().forEach(id -> buckets.add(getBucket(id)));
+            for (int bucket : buckets) {
+                List<Integer> ids = getIds(entry.getKey(), bucket);
+                // an empty bucket is saved as null, which deletes its key
+                values.put(getBucketKey(entry.getKey(), bucket), ids.isEmpty() ? null : defaultGson.toJson(ids));
+            }
+
+            int maxId = Collections.max(entry.getValue());
+            if (maxId > lastId) {
+                lastId = maxId;
+                values.put(LAST_ID_KEY, String.valueOf(lastId));
+            }
+        }
+
+        clearChanges();
+
+        if (isAsyncSave) {
+            if (!values.isEmpty()) {
+                queue(values);
+            }
+            return;
+        }
+
+        // the changes are sent only once, so the states of a failed save are kept unless they were changed since
+        unsentValues.putAll(values);
+        if (unsentValues.isEmpty()) {
+            return;
+        }
+        values = unsentValues;
+        unsentValues = new LinkedHashMap<>();
+        try {
+            updateVersions(client.putAll(values, getExpectedVersions(values)));
+        } catch (HttpRequestSendException e) {
+            unsentValues = values;
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the token under which the manager saves its data on the server
+     * @return token to pass to load to restore the data
+     */
+    public String getToken() {
+        return client.getToken();
+    }
+
+    /**
+     * Returns a future completed when all changes made before the call are saved on the server.
+     * A future completed exceptionally because the server was not available does not mean the changes are lost:
+     * they are sent again with the next change, so the next future can complete normally
+     * @return future completed exceptionally if a change could not be saved after all retries
+     */
+    public synchronized CompletableFuture<Void> whenSaved() {
+        if (queuedSave != null) {
+            return queuedSave;
+        }
+        if (sendingSave != null) {
+            return sendingSave;
+        }
+        if (!queuedValues.isEmpty()) {
+            return failedSave;
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Persists the changed browsing history and waits until all changes are saved on the server
+     */
+    @Override
+    public void close() {
+        super.close();
+
+        try {
+            whenSaved().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof HttpRequestSendException
+                    || e.getCause() instanceof ManagerSaveConflictException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private void queue(Map<String, String> values) {
+        queuedValues.putAll(values);
+        if (queuedSave == null) {
+            queuedSave = new CompletableFuture<>();
+        }
+
+        if (sendingSave == null) {
+            sendQueued();
+        }
+    }
+
+    /*
+     * Must be called under the lock of the manager. Only one batch is sent at a time,
+     * so batches reach the server in the order of the changes, and the expected versions of a batch
+     * already include the versions given to the previous one
+     */
+    private void sendQueued() {
+        Map<String, String> values = queuedValues;
+        CompletableFuture<Void> save = queuedSave;
+        queuedValues = new LinkedHashMap<>();
+        queuedSave = null;
+        sendingSave = save;
+
+        client.putAllAsync(values, getExpectedVersions(values)).handle((savedVersions, sendException) -> {
+            Throwable e = sendException instanceof CompletionException ? sendException.getCause() : sendException;
+            synchronized (this) {
+                sendingSave = null;
+
+                if (e == null) {
+                    try {
+                        updateVersions(savedVersions);
+                    } catch (ManagerSaveConflictException conflictException) {
+                        e = conflictException;
+                    }
+                }
+                if (e != null) {
+                    // the failed states are sent again with the next batch unless they were changed since
+                    values.putAll(queuedValues);
+                    queuedValues = values;
+                }
+
+                if (e instanceof HttpRequestSendException && retryCount < MAX_RETRY_COUNT) {
+                    scheduleRetry(save);
+                    return null;
+                }
+
+                retryCount = 0;
+                if (e != null) {
+                    failedSave = save;
+                }
+                if (!queuedValues.isEmpty() && queuedSave != null) {
+                    sendQueued();
+                }
+            }
+
+            if (e == null) {
+                save.complete(null);
+            } else {
+                save.completeExceptionally(e);
+            }
+            return null;
+        });
+    }
+
+    /*
+     * Must be called under the lock of the manager. The failed save stays pending until the retry,
+     * which also sends the changes queued since, so their future completes together with it
+     */
+    private void scheduleRetry(CompletableFuture<Void> save) {
+        if (queuedSave != null) {
+            CompletableFuture<Void> laterSave = queuedSave;
+            save.whenComplete((result, e) -> {
+                if (e == null) {
+                    laterSave.complete(null);
+                } else {
+                    laterSave.completeExceptionally(e);
+                }
+            });
+        }
+        queuedSave = save;
+        // new changes are only queued until the retry, so the batches stay in the order of the changes
+        sendingSave = save;
+
+        long delay = RETRY_DELAY_MILLIS << retryCount++;
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+            synchronized (this) {
+                sendingSave = null;
+                sendQueued();
+            }
+        });
+    }
+
+    private Map<String, String> loadAll(Collection<String> keys) {
+        Map<String, String> values = new LinkedHashMap<>();
+        client.loadAllVersioned(keys).forEach((key, value) -> {
+            values.put(key, value.getValue());
+            versions.put(key, value.getVersion());
+        });
+        return values;
+    }
+
+    private Map<String, Long> getExpectedVersions(Map<String, String> values) {
+        Map<String, Long> expectedVersions = new HashMap<>();
+        values.keySet().forEach(key -> expectedVersions.put(key, versions.getOrDefault(key, 0L)));
+        return expectedVersions;
+    }
+
+    /*
+     * Null versions mean the server has rejected the batch, because another manager has changed one of its keys
+     */
+    private void updateVersions(Map<String, Long> savedVersions) {
+        if (savedVersions == null) {
+            throw new ManagerSaveConflictException("The data on the server was changed by another manager");
+        }
+
+        savedVersions.forEach((key, version) -> {
+            if (version == 0) {
+                versions.remove(key);
+            } else {
+                versions.put(key, version);
+            }
+        });
+    }
+
+    private static <T extends Task> List<T> loadTasks(TaskType type, Map<TaskType, List<Integer>> ids,
+                                                      Map<String, String> tasksToJson, Function<String, T> parser) {
+        List<T> tasks = new ArrayList<>();
+        for (int id : ids.get(type)) {
+            String json = tasksToJson.get(getTaskKey(type, id));
+            if (json != null) {
+                tasks.add(parser.apply(json));
+            }
+        }
+        return tasks;
+    }
+
+    private String toJson(Task task) {
+        switch (task.getType()) {
+            case EPIC:
+                return epicGson.toJson(task);
+            case SUBTASK:
+                return subTaskGson.toJson(task);
+            default:
+                return defaultGson.toJson(task);
+        }
+    }
+
+    /*
+     * Looks up every id of the bucket, so the cost does not depend on the number of tasks
+     */
+    private List<Integer> getIds(TaskType type, int bucket) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = bucket * BUCKET_SIZE; id < (bucket + 1) * BUCKET_SIZE; id++) {
+            if (getType(id) == type) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    private void markCreated(Task task) {
+        changedTasks.add(task);
+        createdTasks.add(task);
+    }
+
+    private void markUpdated(Task task) {
+        // an update can also add a task with a new id
+        if (getType(task.getId()) == null) {
+            markIdChanged(task.getType(), task.getId());
+        }
+        changedTasks.add(task);
+    }
+
+    private void markDeleted(Task task) {
+        if (task != null) {
+            changedTasks.add(task);
+            markIdChanged(task.getType(), task.getId());
+            viewedIds.remove(task.getId());
+        }
+    }
+
+    private void markIdChanged(TaskType type, int id) {
+        changedIds.computeIfAbsent(type, key -> new HashSet<>()).add(id);
+    }
+
+    /*
+     * The view is marked before it is made, because a synchronous history flush saves it right away,
+     * so only a view that finds a task of the requested type is marked
+     */
+    private void markHistoryChanged(int id, TaskType type) {
+        if (getType(id) == type) {
+            // the id is moved to the end, so that the views are numbered in the order of the last view
+            viewedIds.remove(id);
+            viewedIds.add(id);
+        }
+    }
+
+    private void clearChanges() {
+        changedTasks.clear();
+        createdTasks.clear();
+        changedIds.clear();
+        viewedIds.clear();
+    }
+
+    private static int getBucket(int id) {
+        return id / BUCKET_SIZE;
+    }
+
+    private static String getBucketKey(TaskType type, int bucket) {
+        switch (type) {
+            case EPIC:
+                return EPICS_KEY + "." + bucket;
+            case SUBTASK:
+                return SUBTASKS_KEY + "." + bucket;
+            default:
+                return TASKS_KEY + "." + bucket;
+        }
+    }
+
+    private static String getTaskKey(TaskType type, int id) {
+        return type.name().toLowerCase() + "." + id;
+    }
 
-        client.put(TASKS_KEY, tasks);
-        client.put(EPICS_KEY, epics);
-        client.put(SUBTASKS_KEY, subTasks);
-        client.put(HISTORY_KEY, history);
+    private static String getHistoryKey(int id) {
+        return HISTORY_KEY + "." + id;
     }
 }
@@ -11,18 +11,50 @@ import java.util.ArrayList;
 /**
  * Class implements the work of the task history in the form of a doubly linked list.
  * Only the last view of the task should be displayed in the history.
- * The previous view should be deleted immediately after the new one appears - in O(1)
+ * The previous view should be deleted immediately after the new one appears - in O(1).
+ * When the history is full, the least recently viewed task is evicted from the head of the list - also in O(1)
  */
 public class InMemoryHistoryManager implements HistoryManager {
 
+    private final int capacity;
     private Node first;
     private Node last;
     private final Map<Integer, Node> nodes = new HashMap<>();
 
+    /**
+     * Creates a history without a size limit
+     */
+    public InMemoryHistoryManager() {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates a history that keeps only the last viewed tasks
+     * @param capacity maximum number of tasks in the history
+     */
+    public InMemoryHistoryManager(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("History capacity must be positive");
+        }
+        this.capacity = capacity;
+    }
+
     @Override
     public void add(Task task) {
         remove(task.getId());
         linkLast(task);
+
+        if (nodes.size() > capacity) {
+            remove(first.item.getId());
+        }
+    }
+
+    @Override
+    public void replace(Task task) {
+        Node node = nodes.get(task.getId());
+        if (node != null) {
+            node.item = task;
+        }
     }
 
     @Override
@@ -48,6 +80,29 @@ public class InMemoryHistoryManager implements HistoryManager {
         return history;
     }
 
+    @Override
+    public List<Task> getHistory(int offset, int limit) {
+        checkPage(offset, limit);
+        final List<Task> history = new ArrayList<>(Math.min(limit, Math.max(nodes.size() - offset, 0)));
+
+        Node current = first;
+        for (int i = 0; i < offset && current != null; i++) {
+            current = current.next;
+        }
+        while (current != null && history.size() < limit) {
+            history.add(current.item);
+            current = current.next;
+        }
+
+        return history;
+    }
+
+    static void checkPage(int offset, int limit) {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("Offset and limit of the history must not be negative");
+        }
+    }
+
     private void linkLast(Task task) {
         final Node oldLast = last;
         final Node newNode = new Node(task);
@@ -18,6 +18,7 @@ public class InMemoryTaskManager implements TaskManager {
 
     protected int nextTaskId = 0;
     protected final HistoryManager historyManager = Managers.getDefaultHistory();
+    private final UserHistories userHistories = Managers.getUserHistories();
 
     private final Map<Integer, Task> tasks = new HashMap<>();
     private final Map<Integer, Epic> epics = new HashMap<>();
@@ -26,12 +27,23 @@ public class InMemoryTaskManager implements TaskManager {
     private final Set<Task> prioritizedTasks = new TreeSet<>(
             Comparator.comparing(Task::getStartTime, Comparator.nullsLast(Comparator.naturalOrder()))
                     .thenComparingInt(Task::getId));
+    private final TimeSlotIndex timeSlots = new TimeSlotIndex();
 
     @Override
     public List<Task> getHistory() {
         return historyManager.getHistory();
     }
 
+    @Override
+    public List<Task> getHistory(int offset, int limit) {
+        return historyManager.getHistory(offset, limit);
+    }
+
+    @Override
+    public List<Task> getHistory(String user, int offset, int limit) {
+        return userHistories.getHistory(user, offset, limit);
+    }
+
     @Override
     public List<Task> getTasks() {
         return new ArrayList<>(tasks.values());
@@ -52,6 +64,18 @@ public class InMemoryTaskManager implements TaskManager {
         return epics.get(id).getSubTasks();
     }
 
+    @Override
+    public Task findTaskById(int id) {
+        Task task = tasks.get(id);
+        if (task == null) {
+            task = epics.get(id);
+        }
+        if (task == null) {
+            task = subTasks.get(id);
+        }
+        return task;
+    }
+
     @Override
     public Task getTaskById(int id) {
         Task task = tasks.get(id);
@@ -73,18 +97,38 @@ public class InMemoryTaskManager implements TaskManager {
         return task;
     }
 
+    @Override
+    public Task getTaskById(int id, String user) {
+        return user == null ? getTaskById(id) : userHistories.add(user, id, tasks::get);
+    }
+
+    @Override
+    public Epic getEpicById(int id, String user) {
+        return user == null ? getEpicById(id) : userHistories.add(user, id, epics::get);
+    }
+
+    @Override
+    public SubTask getSubTaskById(int id, String user) {
+        return user == null ? getSubTaskById(id) : userHistories.add(user, id, subTasks::get);
+    }
+
     @Override
     public void deleteTasks() {
         historyManager.removeAll(tasks.keySet());
+        userHistories.removeAll(tasks.keySet());
         prioritizedTasks.removeAll(tasks.values());
+        tasks.keySet().forEach(timeSlots::remove);
         tasks.clear();
     }
 
     @Override
     public void deleteEpics() {
         historyManager.removeAll(subTasks.keySet());
+        userHistories.removeAll(subTasks.keySet());
         historyManager.removeAll(epics.keySet());
+        userHistories.removeAll(epics.keySet());
         prioritizedTasks.removeAll(subTasks.values());
+        subTasks.keySet().forEach(timeSlots::remove);
         subTasks.clear();
         epics.clear();
     }
@@ -92,7 +136,9 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void deleteSubTasks() {
         historyManager.removeAll(subTasks.keySet());
+        userHistories.removeAll(subTasks.keySet());
         prioritizedTasks.removeAll(subTasks.values());
+        subTasks.keySet().forEach(timeSlots::remove);
         epics.values().forEach(Epic::clearSubTasks);
         subTasks.clear();
     }
@@ -100,16 +146,21 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void deleteTaskById(int id) {
         historyManager.remove(id);
+        userHistories.remove(id);
         prioritizedTasks.remove(tasks.get(id));
+        timeSlots.remove(id);
         tasks.remove(id);
     }
 
     @Override
     public void deleteEpicById(int id) {
         historyManager.remove(id);
+        userHistories.remove(id);
         for (SubTask subTask : epics.get(id).getSubTasks()) {
             prioritizedTasks.remove(subTask);
+            timeSlots.remove(subTask.getId());
             historyManager.remove(subTask.getId());
+            userHistories.remove(subTask.getId());
             subTasks.remove(subTask.getId());
         }
         epics.remove(id);
@@ -118,8 +169,10 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void deleteSubTaskById(int id) {
         historyManager.remove(id);
+        userHistories.remove(id);
         SubTask task = subTasks.get(id);
         prioritizedTasks.remove(task);
+        timeSlots.remove(id);
         epics.get(task.getEpic().getId()).removeSubTask(task);
         subTasks.remove(id);
     }
@@ -127,7 +180,7 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void createTask(Task task) {
         task.setId(++nextTaskId);
-        addTaskToPrioritizedTasks(task);
+        addTaskToPrioritizedTasks(task, null);
         tasks.put(task.getId(), task);
     }
 
@@ -140,26 +193,41 @@ public class InMemoryTaskManager implements TaskManager {
     @Override
     public void createSubTask(SubTask subTask) {
         subTask.setId(++nextTaskId);
-        addTaskToPrioritizedTasks(subTask);
+        addTaskToPrioritizedTasks(subTask, null);
         epics.get(subTask.getEpic().getId()).addSubTask(subTask);
         subTasks.put(subTask.getId(), subTask);
     }
 
     @Override
     public void updateTask(Task task) {
-        addTaskToPrioritizedTasks(task);
+        Task previous = tasks.get(task.getId());
+        addTaskToPrioritizedTasks(task, previous);
+        if (previous != null && previous != task) {
+            historyManager.replace(task);
+            userHistories.replace(task);
+        }
         tasks.put(task.getId(), task);
     }
 
     @Override
     public void updateEpic(Epic epic) {
-        epics.put(epic.getId(), epic);
+        Epic previous = epics.put(epic.getId(), epic);
+        if (previous != null && previous != epic) {
+            historyManager.replace(epic);
+            userHistories.replace(epic);
+        }
     }
 
     @Override
     public void updateSubTask(SubTask subTask) {
-        addTaskToPrioritizedTasks(subTask);
-        if (subTasks.get(subTask.getId()) == null) {
+        SubTask previous = subTasks.get(subTask.getId());
+        addTaskToPrioritizedTasks(subTask, previous);
+        if (previous != subTask) {
+            if (previous != null) {
+                epics.get(previous.getEpic().getId()).removeSubTask(previous);
+                historyManager.replace(subTask);
+                userHistories.replace(subTask);
+            }
             epics.get(subTask.getEpic().getId()).addSubTask(subTask);
         }
         subTasks.put(subTask.getId(), subTask);
@@ -170,26 +238,18 @@ public class InMemoryTaskManager implements TaskManager {
         return Collections.unmodifiableSet(prioritizedTasks);
     }
 
-    private void addTaskToPrioritizedTasks(Task task) {
+    private void addTaskToPrioritizedTasks(Task task, Task previous) {
+        if (previous != null && previous != task) {
+            prioritizedTasks.remove(previous);
+        }
         prioritizedTasks.remove(task);
+        timeSlots.remove(task.getId());
 
-        if (task.getStartTime() != null) {
-            for (Task prioritizedTask : prioritizedTasks) {
-                if (prioritizedTask.getStartTime() != null) {
-                    checkTasksIntersectionInTime(task, prioritizedTask);
-                }
-            }
+        if (timeSlots.intersects(task)) {
+            throw new TaskIntersectionException("Task execution time intersect with other tasks");
         }
 
         prioritizedTasks.add(task);
-    }
-
-    private void checkTasksIntersectionInTime(Task firstTask, Task secondTask) {
-        boolean isValidIntersectionForStartTime = firstTask.getStartTime().isBefore(secondTask.getEndTime());
-        boolean isValidIntersectionForEndTime = firstTask.getEndTime().isAfter(secondTask.getStartTime());
-
-        if (isValidIntersectionForStartTime && isValidIntersectionForEndTime) {
-            throw new TaskIntersectionException("Task execution time intersect with other tasks");
-        }
+        timeSlots.add(task);
     }
 }
@@ -0,0 +1,75 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import ru.yandex.practicum.tasktracker.manager.exception.ManagerSaveException;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically compacts the journal of a file-backed task manager in a background thread
+ * once the journal exceeds the size or the number of records
+ */
+public class JournalCompactor {
+
+    private final FileBackedTaskManager taskManager;
+    private final long maxJournalSize;
+    private final int maxJournalRecords;
+    private final Duration checkInterval;
+
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param taskManager task manager in the journal mode
+     * @param maxJournalSize journal size in bytes after which it is compacted
+     * @param maxJournalRecords number of journal records after which it is compacted
+     * @param checkInterval how often the journal is checked
+     */
+    public JournalCompactor(FileBackedTaskManager taskManager, long maxJournalSize, int maxJournalRecords,
+                            Duration checkInterval) {
+        this.taskManager = taskManager;
+        this.maxJournalSize = maxJournalSize;
+        this.maxJournalRecords = maxJournalRecords;
+        this.checkInterval = checkInterval;
+    }
+
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "journal-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long interval = checkInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::compactIfNeeded, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(checkInterval.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Compacts the journal if it exceeds one of the thresholds
+     * @return true if the journal was compacted
+     */
+    boolean compactIfNeeded() {
+        if (taskManager.getJournalSize() < maxJournalSize
+                && taskManager.getJournalRecordCount() < maxJournalRecords) {
+            return false;
+        }
+
+        try {
+            taskManager.compact();
+            return true;
+        } catch (ManagerSaveException e) {
+            // the journal is kept as is and the compaction is retried on the next check
+            return false;
+        }
+    }
+}
@@ -10,6 +10,10 @@ import ru.yandex.practicum.tasktracker.util.TaskAdapter;
 
 public class Managers {
 
+    private static final int DEFAULT_HISTORY_CAPACITY = 10_000;
+    private static final int DEFAULT_USER_HISTORY_CAPACITY = 1_000;
+    private static final int DEFAULT_USER_COUNT = 1_000;
+
     /**
      * Returns a default task manager
      * @return task manager
@@ -19,11 +23,45 @@ public class Managers {
     }
 
     /**
-     * Returns a default history manager
+     * Returns a thread-safe in-memory task manager
+     * @return task manager
+     */
+    public static TaskManager getConcurrent() {
+        return new ConcurrentTaskManager();
+    }
+
+    /**
+     * Returns a default history manager, which keeps the last 10 000 viewed tasks
      * @return history manager
      */
     public static HistoryManager getDefaultHistory() {
-        return new InMemoryHistoryManager();
+        return getDefaultHistory(DEFAULT_HISTORY_CAPACITY);
+    }
+
+    /**
+     * Returns a history manager that evicts the least recently viewed task when it is full
+     * @param capacity maximum number of tasks in the history
+     * @return history manager
+     */
+    public static HistoryManager getDefaultHistory(int capacity) {
+        return new InMemoryHistoryManager(capacity);
+    }
+
+    /**
+     * Returns a history manager built on primitive arrays, which does not allocate on repeated views
+     * @param capacity maximum number of tasks in the history
+     * @return history manager
+     */
+    public static HistoryManager getCompactHistory(int capacity) {
+        return new CompactHistoryManager(capacity);
+    }
+
+    /**
+     * Returns histories of the last 1 000 active users, each keeping the last 1 000 viewed tasks
+     * @return histories of users
+     */
+    public static UserHistories getUserHistories() {
+        return new UserHistories(DEFAULT_USER_HISTORY_CAPACITY, DEFAULT_USER_COUNT);
     }
 
     public static Gson getDefaultGson() {
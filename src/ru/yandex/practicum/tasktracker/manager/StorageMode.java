@@ -0,0 +1,18 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+/**
+ * Defines how the file-backed task manager persists changes
+ */
+public enum StorageMode {
+
+    /**
+     * The whole file is rewritten after every change
+     */
+    SNAPSHOT,
+
+    /**
+     * Every change is appended as one record to the journal next to the file.
+     * The file is restored from the latest snapshot and then the journal is replayed
+     */
+    JOURNAL
+}
@@ -3,6 +3,7 @@ package ru.yandex.practicum.tasktracker.manager;
 import ru.yandex.practicum.tasktracker.model.Epic;
 import ru.yandex.practicum.tasktracker.model.SubTask;
 import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskType;
 
 import java.util.List;
 import java.util.Set;
@@ -15,6 +16,23 @@ public interface TaskManager {
      */
     List<Task> getHistory();
 
+    /**
+     * Returns a page of the list of viewed tasks
+     * @param offset number of the oldest views to skip
+     * @param limit maximum number of views to return
+     * @return page of the list of viewed tasks
+     */
+    List<Task> getHistory(int offset, int limit);
+
+    /**
+     * Returns a page of the list of tasks viewed by a user
+     * @param user user or session
+     * @param offset number of the oldest views to skip
+     * @param limit maximum number of views to return
+     * @return page of the list of viewed tasks, empty if the user has not viewed anything
+     */
+    List<Task> getHistory(String user, int offset, int limit);
+
     /**
      * Returns a list of all tasks
      * @return list of all tasks
@@ -40,6 +58,23 @@ public interface TaskManager {
      */
     List<SubTask> getSubTasksByEpic(int id);
 
+    /**
+     * Returns the type of a task, an epic or a subtask by id without adding it to the history
+     * @param id
+     * @return type or null if there was no one
+     */
+    default TaskType getType(int id) {
+        Task task = findTaskById(id);
+        return task == null ? null : task.getType();
+    }
+
+    /**
+     * Returns a task, an epic or a subtask by id without adding it to the history
+     * @param id
+     * @return task or null if there was no one
+     */
+    Task findTaskById(int id);
+
     /**
      * Returns a task by id and adds a task to the history
      * @param id
@@ -61,6 +96,30 @@ public interface TaskManager {
      */
     SubTask getSubTaskById(int id);
 
+    /**
+     * Returns a task by id and adds a task to the history of a user
+     * @param id
+     * @param user user or session, null for the common history
+     * @return task or null if there was no one
+     */
+    Task getTaskById(int id, String user);
+
+    /**
+     * Returns an epic by id and adds an epic to the history of a user
+     * @param id
+     * @param user user or session, null for the common history
+     * @return epic or null if there was no one
+     */
+    Epic getEpicById(int id, String user);
+
+    /**
+     * Returns a subtask by id and adds a subtask to the history of a user
+     * @param id
+     * @param user user or session, null for the common history
+     * @return subtask or null if there was no one
+     */
+    SubTask getSubTaskById(int id, String user);
+
     /**
      * Deletes all tasks
      */
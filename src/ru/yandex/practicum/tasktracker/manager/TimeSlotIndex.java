@@ -0,0 +1,218 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import ru.yandex.practicum.tasktracker.model.Task;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class implements an index of task execution time slots in the form of an augmented AVL tree.
+ * Nodes are ordered by start time and task id, each node keeps the latest end time of its subtree,
+ * so checking whether a time slot intersects with other tasks takes O(log n).
+ * The index stores its own copy of the time slot, so the task can be changed before it is re-indexed
+ */
+class TimeSlotIndex {
+
+    private Node root;
+    private final Map<Integer, Node> nodes = new HashMap<>();
+
+    /**
+     * Adds the time slot of a task to the index, replacing the previous time slot of the task.
+     * Tasks without a start time are not indexed
+     * @param task
+     */
+    void add(Task task) {
+        remove(task.getId());
+
+        if (task.getStartTime() == null) {
+            return;
+        }
+
+        Node node = new Node(task.getId(), task.getStartTime(), task.getEndTime());
+        root = insert(root, node);
+        nodes.put(node.id, node);
+    }
+
+    /**
+     * Removes the time slot of a task by id
+     * @param taskId
+     */
+    void remove(int taskId) {
+        Node node = nodes.remove(taskId);
+        if (node != null) {
+            root = delete(root, node.start, node.id);
+        }
+    }
+
+    /**
+     * Removes all time slots
+     */
+    void clear() {
+        root = null;
+        nodes.clear();
+    }
+
+    /**
+     * Checks if the time slot of a task intersects with the time slot of another indexed task
+     * @param task
+     * @return true if the time slots intersect
+     */
+    boolean intersects(Task task) {
+        LocalDateTime start = task.getStartTime();
+        LocalDateTime end = task.getEndTime();
+        if (start == null) {
+            return false;
+        }
+
+        Node current = root;
+        while (current != null) {
+            if (current.id != task.getId() && current.start.isBefore(end) && current.end.isAfter(start)) {
+                return true;
+            }
+
+            if (current.left != null && current.left.maxEnd.isAfter(start)) {
+                current = current.left;
+            } else {
+                current = current.right;
+            }
+        }
+
+        return false;
+    }
+
+    private Node insert(Node node, Node newNode) {
+        if (node == null) {
+            return newNode;
+        }
+
+        if (compare(newNode.start, newNode.id, node) < 0) {
+            node.left = insert(node.left, newNode);
+        } else {
+            node.right = insert(node.right, newNode);
+        }
+
+        return balance(node);
+    }
+
+    private Node delete(Node node, LocalDateTime start, int id) {
+        if (node == null) {
+            return null;
+        }
+
+        int cmp = compare(start, id, node);
+        if (cmp < 0) {
+            node.left = delete(node.left, start, id);
+        } else if (cmp > 0) {
+            node.right = delete(node.right, start, id);
+        } else {
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+
+            Node successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            successor.right = deleteMin(node.right);
+            successor.left = node.left;
+            node = successor;
+        }
+
+        return balance(node);
+    }
+
+    private Node deleteMin(Node node) {
+        if (node.left == null) {
+            return node.right;
+        }
+
+        node.left = deleteMin(node.left);
+        return balance(node);
+    }
+
+    private int compare(LocalDateTime start, int id, Node node) {
+        int cmp = start.compareTo(node.start);
+        if (cmp != 0) {
+            return cmp;
+        }
+
+        return Integer.compare(id, node.id);
+    }
+
+    private Node balance(Node node) {
+        update(node);
+
+        int balanceFactor = height(node.left) - height(node.right);
+        if (balanceFactor > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(node.left);
+            }
+            return rotateRight(node);
+        }
+
+        if (balanceFactor < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(node.right);
+            }
+            return rotateLeft(node);
+        }
+
+        return node;
+    }
+
+    private Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+
+        LocalDateTime maxEnd = node.end;
+        if (node.left != null && node.left.maxEnd.isAfter(maxEnd)) {
+            maxEnd = node.left.maxEnd;
+        }
+        if (node.right != null && node.right.maxEnd.isAfter(maxEnd)) {
+            maxEnd = node.right.maxEnd;
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    private int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static class Node {
+        final int id;
+        final LocalDateTime start;
+        final LocalDateTime end;
+        LocalDateTime maxEnd;
+        int height = 1;
+        Node left;
+        Node right;
+
+        Node(int id, LocalDateTime start, LocalDateTime end) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.maxEnd = end;
+        }
+    }
+}
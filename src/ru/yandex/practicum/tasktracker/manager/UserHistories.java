@@ -0,0 +1,127 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import ru.yandex.practicum.tasktracker.model.Task;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.IntFunction;
+
+/**
+ * Independent browsing histories of users or sessions, all referring to the tasks of one task manager.
+ * Every history has its own lock and capacity, so views of different users never wait for each other.
+ * A history is created on the first view of its user. When there are more users than allowed,
+ * the whole history of the user who has not viewed anything for the longest time is dropped
+ */
+public class UserHistories {
+
+    private final int capacity;
+    private final Map<String, HistoryManager> histories;
+
+    /**
+     * @param capacity maximum number of tasks in the history of each user
+     * @param maxUsers maximum number of users whose histories are kept
+     */
+    public UserHistories(int capacity, int maxUsers) {
+        if (maxUsers <= 0) {
+            throw new IllegalArgumentException("Number of users must be positive");
+        }
+        this.capacity = capacity;
+        this.histories = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, HistoryManager> eldest) {
+                return size() > maxUsers;
+            }
+        };
+    }
+
+    /**
+     * Looks a task up and adds it to the history of a user.
+     * The task is looked up under the lock of the history, so that a task deleted concurrently
+     * is not added back to the history after it was removed from there
+     * @param user
+     * @param id
+     * @param lookup returns a task by id or null if there was no one
+     * @return task or null if there was no one
+     */
+    public <T extends Task> T add(String user, int id, IntFunction<T> lookup) {
+        HistoryManager history;
+        synchronized (histories) {
+            history = histories.computeIfAbsent(user, key -> Managers.getDefaultHistory(capacity));
+        }
+
+        synchronized (history) {
+            T task = lookup.apply(id);
+            if (task != null) {
+                history.add(task);
+            }
+            return task;
+        }
+    }
+
+    /**
+     * Returns a page of the history of a user
+     * @param user
+     * @param offset number of the oldest views to skip
+     * @param limit maximum number of views to return
+     * @return page of the history, empty if the user has not viewed anything
+     */
+    public List<Task> getHistory(String user, int offset, int limit) {
+        HistoryManager history;
+        synchronized (histories) {
+            history = histories.get(user);
+        }
+        if (history == null) {
+            InMemoryHistoryManager.checkPage(offset, limit);
+            return List.of();
+        }
+
+        synchronized (history) {
+            return history.getHistory(offset, limit);
+        }
+    }
+
+    /**
+     * Replaces a task in all histories with its new version
+     * @param task
+     */
+    public void replace(Task task) {
+        for (HistoryManager history : getHistories()) {
+            synchronized (history) {
+                history.replace(task);
+            }
+        }
+    }
+
+    /**
+     * Removes a task from all histories
+     * @param taskId
+     */
+    public void remove(int taskId) {
+        for (HistoryManager history : getHistories()) {
+            synchronized (history) {
+                history.remove(taskId);
+            }
+        }
+    }
+
+    /**
+     * Removes tasks from all histories
+     * @param taskIds
+     */
+    public void removeAll(Set<Integer> taskIds) {
+        for (HistoryManager history : getHistories()) {
+            synchronized (history) {
+                history.removeAll(taskIds);
+            }
+        }
+    }
+
+    /* the histories are copied, so that the map is not locked while every history is changed */
+    private List<HistoryManager> getHistories() {
+        synchronized (histories) {
+            return List.copyOf(histories.values());
+        }
+    }
+}
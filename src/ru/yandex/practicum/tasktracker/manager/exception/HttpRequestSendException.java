@@ -5,6 +5,10 @@ public class HttpRequestSendException extends RuntimeException {
     public HttpRequestSendException() {
     }
 
+    public HttpRequestSendException(String message) {
+        super(message);
+    }
+
     public HttpRequestSendException(String message, Throwable cause) {
         super(message, cause);
     }
@@ -0,0 +1,11 @@
+package ru.yandex.practicum.tasktracker.manager.exception;
+
+public class ManagerSaveConflictException extends RuntimeException {
+
+    public ManagerSaveConflictException() {
+    }
+
+    public ManagerSaveConflictException(String message) {
+        super(message);
+    }
+}
@@ -2,15 +2,32 @@ package ru.yandex.practicum.tasktracker.model;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 
 public class Epic extends Task {
 
     private final Set<SubTask> subTasks = new LinkedHashSet<>();
 
+    /*
+     * Aggregates of the subtasks are maintained incrementally, so the getters of the epic take O(1).
+     * They are transient and rebuilt once on first access if the subtasks were set bypassing addSubTask,
+     * for example by Gson
+     */
+    private final transient Set<SubTask> trackedSubTasks = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final transient int[] statusCounts = new int[Status.values().length];
+    private final transient NavigableMap<LocalDateTime, Integer> startTimes = new TreeMap<>();
+    private final transient NavigableMap<LocalDateTime, Integer> endTimes = new TreeMap<>();
+    private transient Duration totalDuration;
+    private transient int durationCount;
+    private transient boolean isAggregated;
+
     public List<SubTask> getSubTasks() {
         return List.copyOf(subTasks);
     }
@@ -20,6 +37,8 @@ public class Epic extends Task {
      */
     public void clearSubTasks() {
         subTasks.clear();
+        resetAggregates();
+        isAggregated = true;
     }
 
     /**
@@ -27,7 +46,9 @@ public class Epic extends Task {
      * @param subTask
      */
     public void addSubTask(SubTask subTask) {
-        subTasks.add(subTask);
+        if (subTasks.add(subTask) && isAggregated) {
+            include(subTask);
+        }
     }
 
     /**
@@ -35,7 +56,33 @@ public class Epic extends Task {
      * @param subTask
      */
     public void removeSubTask(SubTask subTask) {
-        subTasks.remove(subTask);
+        aggregate();
+
+        if (trackedSubTasks.contains(subTask)) {
+            // the hash code of a subtask changes along with its fields, so it is looked up by reference
+            if (!subTasks.remove(subTask)) {
+                subTasks.removeIf(item -> item == subTask);
+            }
+            exclude(subTask);
+        } else if (subTasks.remove(subTask)) {
+            isAggregated = false;
+        }
+    }
+
+    /**
+     * Applies a change to a subtask and updates the aggregates of the epic if the subtask belongs to it
+     * @param subTask
+     * @param change
+     */
+    void changeSubTask(SubTask subTask, Runnable change) {
+        if (!isAggregated || !trackedSubTasks.contains(subTask)) {
+            change.run();
+            return;
+        }
+
+        exclude(subTask);
+        change.run();
+        include(subTask);
     }
 
     @Override
@@ -52,31 +99,15 @@ public class Epic extends Task {
      */
     @Override
     public Status getStatus() {
-        if (subTasks.isEmpty()) {
-            return Status.NEW;
-        }
+        aggregate();
 
-        boolean isStatusNew = true;
-        boolean isStatusDone = true;
+        int subTasksCount = trackedSubTasks.size();
 
-        for (SubTask subTask : subTasks) {
-            if (subTask.getStatus() != Status.NEW) {
-                isStatusNew = false;
-            }
-            if (subTask.getStatus() != Status.DONE) {
-                isStatusDone = false;
-            }
-
-            if (!isStatusNew && !isStatusDone) {
-                break;
-            }
-        }
-
-        if (isStatusNew) {
+        if (statusCounts[Status.NEW.ordinal()] == subTasksCount) {
             return Status.NEW;
         }
 
-        if (isStatusDone) {
+        if (statusCounts[Status.DONE.ordinal()] == subTasksCount) {
             return Status.DONE;
         }
 
@@ -94,10 +125,8 @@ public class Epic extends Task {
      */
     @Override
     public LocalDateTime getStartTime() {
-        return subTasks.stream()
-                .min(Comparator.comparing(SubTask::getStartTime, Comparator.nullsLast(Comparator.naturalOrder())))
-                .map(SubTask::getStartTime)
-                .orElse(null);
+        aggregate();
+        return startTimes.isEmpty() ? null : startTimes.firstKey();
     }
 
     @Override
@@ -111,20 +140,8 @@ public class Epic extends Task {
      */
     @Override
     public Duration getDuration() {
-        Duration totalDuration = null;
-        for (SubTask subTask : subTasks) {
-            if (subTask.getDuration() == null) {
-                continue;
-            }
-
-            if (totalDuration == null) {
-                totalDuration = subTask.getDuration();
-            } else {
-                totalDuration = totalDuration.plus(subTask.getDuration());
-            }
-        }
-
-        return totalDuration;
+        aggregate();
+        return durationCount == 0 ? null : totalDuration;
     }
 
     @Override
@@ -138,10 +155,71 @@ public class Epic extends Task {
      */
     @Override
     public LocalDateTime getEndTime() {
-        return subTasks.stream()
-                .max(Comparator.comparing(SubTask::getEndTime, Comparator.nullsFirst(Comparator.naturalOrder())))
-                .map(SubTask::getEndTime)
-                .orElse(null);
+        aggregate();
+        return endTimes.isEmpty() ? null : endTimes.lastKey();
+    }
+
+    private void aggregate() {
+        if (isAggregated) {
+            return;
+        }
+
+        resetAggregates();
+        subTasks.forEach(this::include);
+        isAggregated = true;
+    }
+
+    private void resetAggregates() {
+        trackedSubTasks.clear();
+        Arrays.fill(statusCounts, 0);
+        startTimes.clear();
+        endTimes.clear();
+        totalDuration = Duration.ZERO;
+        durationCount = 0;
+    }
+
+    private void include(SubTask subTask) {
+        if (!trackedSubTasks.add(subTask)) {
+            return;
+        }
+
+        if (subTask.getStatus() != null) {
+            statusCounts[subTask.getStatus().ordinal()]++;
+        }
+
+        if (subTask.getStartTime() != null) {
+            startTimes.merge(subTask.getStartTime(), 1, Integer::sum);
+            endTimes.merge(subTask.getEndTime(), 1, Integer::sum);
+        }
+
+        if (subTask.getDuration() != null) {
+            totalDuration = totalDuration.plus(subTask.getDuration());
+            durationCount++;
+        }
+    }
+
+    private void exclude(SubTask subTask) {
+        if (!trackedSubTasks.remove(subTask)) {
+            return;
+        }
+
+        if (subTask.getStatus() != null) {
+            statusCounts[subTask.getStatus().ordinal()]--;
+        }
+
+        if (subTask.getStartTime() != null) {
+            decrement(startTimes, subTask.getStartTime());
+            decrement(endTimes, subTask.getEndTime());
+        }
+
+        if (subTask.getDuration() != null) {
+            totalDuration = totalDuration.minus(subTask.getDuration());
+            durationCount--;
+        }
+    }
+
+    private void decrement(NavigableMap<LocalDateTime, Integer> counts, LocalDateTime key) {
+        counts.computeIfPresent(key, (dateTime, count) -> count == 1 ? null : count - 1);
     }
 
     @Override
@@ -1,5 +1,7 @@
 package ru.yandex.practicum.tasktracker.model;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.Objects;
 
 public class SubTask extends Task {
@@ -14,6 +16,21 @@ public class SubTask extends Task {
         this.epic = epic;
     }
 
+    @Override
+    public void setStatus(Status status) {
+        changeInEpic(() -> super.setStatus(status));
+    }
+
+    @Override
+    public void setStartTime(LocalDateTime startTime) {
+        changeInEpic(() -> super.setStartTime(startTime));
+    }
+
+    @Override
+    public void setDuration(Duration duration) {
+        changeInEpic(() -> super.setDuration(duration));
+    }
+
     @Override
     public TaskType getType() {
         return TaskType.SUBTASK;
@@ -53,4 +70,12 @@ public class SubTask extends Task {
     public String toCsvRow() {
         return String.format("%s,%d", super.toCsvRow(), epic.getId());
     }
+
+    private void changeInEpic(Runnable change) {
+        if (epic == null) {
+            change.run();
+        } else {
+            epic.changeSubTask(this, change);
+        }
+    }
 }
@@ -3,6 +3,7 @@ package ru.yandex.practicum.tasktracker.server;
 public enum Endpoint {
 
     GET_HISTORY("GET"),
+    GET_HISTORY_PAGE("GET"),
     GET_TASKS("GET"),
     GET_EPICS("GET"),
     GET_SUBTASKS("GET"),
@@ -0,0 +1,64 @@
+package ru.yandex.practicum.tasktracker.server;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Defines which threads handle the requests of a server.
+ * All modes except DISPATCHER handle requests concurrently,
+ * so the task server requires a thread-safe task manager such as ConcurrentTaskManager
+ */
+public enum ExecutorMode {
+
+    /**
+     * Requests are handled one by one on the dispatcher thread of the server
+     */
+    DISPATCHER,
+
+    /**
+     * Requests are handled by a fixed pool with one thread per processor
+     */
+    FIXED_POOL,
+
+    /**
+     * Requests are handled by a work-stealing pool with one thread per processor
+     */
+    WORK_STEALING,
+
+    /**
+     * Every request is handled by a new thread
+     */
+    THREAD_PER_REQUEST;
+
+    /**
+     * Creates an executor for the server
+     * @param threadName prefix of the names of the executor threads
+     * @return executor or null for DISPATCHER
+     */
+    ExecutorService createExecutor(String threadName) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, threadName + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        switch (this) {
+            case FIXED_POOL:
+                return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), threadFactory);
+            case WORK_STEALING:
+                return Executors.newWorkStealingPool();
+            case THREAD_PER_REQUEST:
+                // the pool keeps no idle threads, so that every request gets a new thread
+                return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 0, TimeUnit.SECONDS,
+                        new SynchronousQueue<>(), threadFactory);
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.tasktracker.server;
+
+/**
+ * Defines when the durable key-value server forces its log to disk
+ */
+public enum FsyncPolicy {
+
+    /**
+     * The log is forced before every write is acknowledged
+     */
+    EVERY_WRITE,
+
+    /**
+     * The log is forced in the background once per fsync interval,
+     * so writes of the last interval can be lost on a power failure
+     */
+    PERIODIC,
+
+    /**
+     * The log is forced only on snapshots and when the server is stopped
+     */
+    NEVER
+}
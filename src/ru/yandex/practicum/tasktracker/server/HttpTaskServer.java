@@ -10,64 +10,87 @@ import ru.yandex.practicum.tasktracker.manager.exception.TaskIntersectionExcepti
 import ru.yandex.practicum.tasktracker.model.Epic;
 import ru.yandex.practicum.tasktracker.model.SubTask;
 import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskType;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 public class HttpTaskServer {
 
     public static final int PORT = 8080;
     private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+    private static final String OFFSET_PARAMETER = "offset=";
+    private static final String LIMIT_PARAMETER = "limit=";
+    private static final String USER_PARAMETER = "user=";
+    private static final String USER_HEADER = "X-User";
 
     private final TaskManager taskManager;
     private final Gson defaultGson;
     private final Gson taskGson;
     private final Gson epicGson;
     private final Gson subTaskGson;
+    private final ExecutorMode executorMode;
     private  HttpServer server;
+    private ExecutorService executor;
 
-    private final Map<String, List<Endpoint>> paths = new HashMap<>();
+    private final Router router = new Router();
 
     public HttpTaskServer(TaskManager taskManager) {
+        this(taskManager, ExecutorMode.DISPATCHER);
+    }
+
+    /**
+     * @param taskManager task manager, must be thread-safe for all modes except DISPATCHER
+     * @param executorMode
+     */
+    public HttpTaskServer(TaskManager taskManager, ExecutorMode executorMode) {
         this.taskManager = taskManager;
+        this.executorMode = executorMode;
 
         defaultGson = Managers.getDefaultGson();
         taskGson = Managers.getTaskGson(taskManager);
         epicGson = Managers.getEpicGson(taskManager);
         subTaskGson = Managers.getSubTaskGson(taskManager);
 
-        fillPaths();
+        fillRoutes();
     }
 
     public void start() throws IOException {
         server = HttpServer.create(new InetSocketAddress("localhost", PORT), 0);
         server.createContext("/tasks", this::handleTasks);
+        executor = executorMode.createExecutor("http-task-server");
+        server.setExecutor(executor);
         server.start();
     }
 
     public void stop() {
         server.stop(0);
+        if (executor != null) {
+            executor.shutdown();
+        }
     }
 
     private void handleTasks(HttpExchange exchange) throws IOException {
         try {
-            String path = exchange.getRequestURI().getPath();
             String query = exchange.getRequestURI().getRawQuery();
-            if (query != null) {
-                path += "?" + query;
-            }
+            Endpoint endpoint = router.resolve(exchange.getRequestURI().getPath(), query,
+                    exchange.getRequestMethod());
 
-            Endpoint endpoint = getEndpoint(path, exchange.getRequestMethod());
+            if (endpoint != Endpoint.UNKNOWN && Router.isIdOutOfRange(query)) {
+                writeResponse(exchange, 400, "Id must not exceed " + Integer.MAX_VALUE, "text/plain");
+                return;
+            }
 
             switch (endpoint) {
                 case GET_HISTORY:
-                    handleGetHistory(exchange);
+                case GET_HISTORY_PAGE:
+                    handleGetHistory(exchange, query);
                     break;
                 case GET_TASKS:
                     handleGetTasks(exchange);
@@ -128,19 +151,31 @@ public class HttpTaskServer {
         }
     }
 
-    private Endpoint getEndpoint(String requestPath, String requestMethod) {
-        return paths.keySet().stream()
-                .filter(requestPath::matches)
-                .map(paths::get)
-                .flatMap(List::stream)
-                .filter(endpoint -> endpoint.getRequestMethod().equals(requestMethod))
-                .findFirst()
-                .orElse(Endpoint.UNKNOWN);
-    }
+    /**
+     * Returns a page of the history by the query "offset=[number]&limit=[number]",
+     * both parameters are optional. The history of a user is selected
+     * by the query parameter "user=[user]" or the header X-User, otherwise the common history is returned
+     */
+    private void handleGetHistory(HttpExchange exchange, String query) throws IOException {
+        int offset;
+        int limit;
+        try {
+            offset = getIntParameter(query, OFFSET_PARAMETER, 0);
+            limit = getIntParameter(query, LIMIT_PARAMETER, Integer.MAX_VALUE);
+        } catch (NumberFormatException e) {
+            writeResponse(exchange, 400, "Offset and limit must be numbers", "text/plain");
+            return;
+        }
+        if (offset < 0 || limit < 0) {
+            writeResponse(exchange, 400, "Offset and limit must not be negative", "text/plain");
+            return;
+        }
 
-    private void handleGetHistory(HttpExchange exchange) throws IOException {
-        writeResponse(exchange, 200, taskGson.toJson(taskManager.getHistory()),
-                "application/json");
+        String user = getUser(exchange, query);
+        List<Task> history = user == null
+                ? taskManager.getHistory(offset, limit)
+                : taskManager.getHistory(user, offset, limit);
+        writeResponse(exchange, 200, taskGson.toJson(history), "application/json");
     }
 
     private void handleGetTasks(HttpExchange exchange) throws IOException {
@@ -174,8 +209,8 @@ public class HttpTaskServer {
         int taskId = getTaskId(query);
 
         if (isValidTask(taskId)) {
-            writeResponse(exchange, 200, defaultGson.toJson(taskManager.getTaskById(taskId)),
-                    "application/json");
+            Task task = taskManager.getTaskById(taskId, getUser(exchange, null));
+            writeResponse(exchange, 200, defaultGson.toJson(task), "application/json");
         } else {
             writeResponse(exchange, 404, "Task with the specified ID was not found",
                     "text/plain");
@@ -186,8 +221,8 @@ public class HttpTaskServer {
         int epicId = getTaskId(query);
 
         if (isValidEpic(epicId)) {
-            writeResponse(exchange, 200, epicGson.toJson(taskManager.getEpicById(epicId)),
-                    "application/json");
+            Epic epic = taskManager.getEpicById(epicId, getUser(exchange, null));
+            writeResponse(exchange, 200, epicGson.toJson(epic), "application/json");
         } else {
             writeResponse(exchange, 404, "Epic with the specified ID was not found",
                     "text/plain");
@@ -198,8 +233,8 @@ public class HttpTaskServer {
         int subTaskId = getTaskId(query);
 
         if (isValidSubTask(subTaskId)) {
-            writeResponse(exchange, 200, subTaskGson.toJson(taskManager.getSubTaskById(subTaskId)),
-                    "application/json");
+            SubTask subTask = taskManager.getSubTaskById(subTaskId, getUser(exchange, null));
+            writeResponse(exchange, 200, subTaskGson.toJson(subTask), "application/json");
         } else {
             writeResponse(exchange, 404, "Subtask with the specified ID was not found",
                     "text/plain");
@@ -360,37 +395,76 @@ public class HttpTaskServer {
         }
     }
 
+    /*
+     * Returns the default value if the query has no such parameter
+     */
+    private int getIntParameter(String query, String name, int defaultValue) {
+        String value = getParameter(query, name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /*
+     * Returns null if the query has no such parameter
+     */
+    private String getParameter(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith(name)) {
+                return URLDecoder.decode(parameter.substring(name.length()), DEFAULT_CHARSET);
+            }
+        }
+        return null;
+    }
+
+    /*
+     * Returns null for requests of the common history
+     */
+    private String getUser(HttpExchange exchange, String query) {
+        String user = getParameter(query, USER_PARAMETER);
+        if (user == null) {
+            user = exchange.getRequestHeaders().getFirst(USER_HEADER);
+        }
+        return user == null || user.isEmpty() ? null : user;
+    }
+
     private int getTaskId(String query) {
-        return Integer.parseInt(query.replaceFirst("id=", ""));
+        return Router.getId(query);
     }
 
     private boolean isValidTask(int taskId) {
-        return taskManager.getTasks().stream()
-                .map(Task::getId)
-                .anyMatch(id -> taskId == id);
+        return taskManager.getType(taskId) == TaskType.TASK;
     }
 
     private boolean isValidEpic(int epicId) {
-        return taskManager.getEpics().stream()
-                .map(Epic::getId)
-                .anyMatch(id -> epicId == id);
+        return taskManager.getType(epicId) == TaskType.EPIC;
     }
 
     private boolean isValidSubTask(int subTaskId) {
-        return taskManager.getSubTasks().stream()
-                .map(SubTask::getId)
-                .anyMatch(id -> subTaskId == id);
-    }
-
-    private void fillPaths() {
-        paths.put("/tasks/", List.of(Endpoint.GET_PRIORITIZED_TASKS));
-        paths.put("/tasks/history/", List.of(Endpoint.GET_HISTORY));
-        paths.put("/tasks/task/", List.of(Endpoint.GET_TASKS, Endpoint.POST_TASK, Endpoint.DELETE_TASKS));
-        paths.put("/tasks/epic/", List.of(Endpoint.GET_EPICS, Endpoint.POST_EPIC, Endpoint.DELETE_EPICS));
-        paths.put("/tasks/subtask/", List.of(Endpoint.GET_SUBTASKS, Endpoint.POST_SUBTASK, Endpoint.DELETE_SUBTASKS));
-        paths.put("/tasks/subtask/epic/\\?id=\\d+", List.of(Endpoint.GET_SUBTASKS_BY_EPIC));
-        paths.put("/tasks/task/\\?id=\\d+", List.of(Endpoint.GET_TASK_BY_ID, Endpoint.DELETE_TASK_BY_ID));
-        paths.put("/tasks/epic/\\?id=\\d+", List.of(Endpoint.GET_EPIC_BY_ID, Endpoint.DELETE_EPIC_BY_ID));
-        paths.put("/tasks/subtask/\\?id=\\d+", List.of(Endpoint.GET_SUBTASK_BY_ID, Endpoint.DELETE_SUBTASK_BY_ID));
+        return taskManager.getType(subTaskId) == TaskType.SUBTASK;
+    }
+
+    private void fillRoutes() {
+        router.add("/tasks/", Endpoint.GET_PRIORITIZED_TASKS)
+                .add("/tasks/history/", Endpoint.GET_HISTORY)
+                .addWithQuery("/tasks/history/", Endpoint.GET_HISTORY_PAGE)
+                .add("/tasks/task/", Endpoint.GET_TASKS)
+                .add("/tasks/task/", Endpoint.POST_TASK)
+                .add("/tasks/task/", Endpoint.DELETE_TASKS)
+                .add("/tasks/epic/", Endpoint.GET_EPICS)
+                .add("/tasks/epic/", Endpoint.POST_EPIC)
+                .add("/tasks/epic/", Endpoint.DELETE_EPICS)
+                .add("/tasks/subtask/", Endpoint.GET_SUBTASKS)
+                .add("/tasks/subtask/", Endpoint.POST_SUBTASK)
+                .add("/tasks/subtask/", Endpoint.DELETE_SUBTASKS)
+                .addWithId("/tasks/subtask/epic/", Endpoint.GET_SUBTASKS_BY_EPIC)
+                .addWithId("/tasks/task/", Endpoint.GET_TASK_BY_ID)
+                .addWithId("/tasks/task/", Endpoint.DELETE_TASK_BY_ID)
+                .addWithId("/tasks/epic/", Endpoint.GET_EPIC_BY_ID)
+                .addWithId("/tasks/epic/", Endpoint.DELETE_EPIC_BY_ID)
+                .addWithId("/tasks/subtask/", Endpoint.GET_SUBTASK_BY_ID)
+                .addWithId("/tasks/subtask/", Endpoint.DELETE_SUBTASK_BY_ID);
     }
 }
@@ -0,0 +1,211 @@
+package ru.yandex.practicum.tasktracker.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary format of the batch requests and responses of the key-value server.
+ * A batch starts with the number of entries, every key and value is prefixed with its length in bytes,
+ * so values are passed as they are, without escaping and decoding. A value of length -1 deletes the key.
+ * Every value is preceded by a version: the expected version of the key in a save request
+ * and the current version in a load response
+ */
+public final class KVBatchFormat {
+
+    public static final String CONTENT_TYPE = "application/octet-stream";
+    /**
+     * Expected version of a key that is saved regardless of its current version
+     */
+    public static final long ANY_VERSION = -1;
+    private static final int DELETED_VALUE = -1;
+
+    private KVBatchFormat() {
+    }
+
+    /**
+     * @param keys
+     * @return batch of keys
+     */
+    public static byte[] writeKeys(Collection<String> keys) {
+        return write(out -> {
+            out.writeInt(keys.size());
+            for (String key : keys) {
+                writeString(out, key);
+            }
+        });
+    }
+
+    /**
+     * @param in batch of keys
+     * @return keys
+     * @throws IOException if the batch is malformed or cannot be read
+     */
+    public static List<String> readKeys(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int count = readLength(data);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            keys.add(readString(data));
+        }
+        return keys;
+    }
+
+    /**
+     * @param values values with their versions by keys
+     * @return batch of values
+     */
+    public static byte[] writeValues(Map<String, Entry> values) {
+        return write(out -> {
+            out.writeInt(values.size());
+            for (Map.Entry<String, Entry> entry : values.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeLong(entry.getValue().getVersion());
+                if (entry.getValue().getValue() == null) {
+                    out.writeInt(DELETED_VALUE);
+                } else {
+                    writeBytes(out, entry.getValue().getValue());
+                }
+            }
+        });
+    }
+
+    /**
+     * @param in batch of values
+     * @return values with their versions by keys in the order of the batch
+     * @throws IOException if the batch is malformed or cannot be read
+     */
+    public static Map<String, Entry> readValues(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int count = readLength(data);
+        Map<String, Entry> values = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String key = readString(data);
+            long version = data.readLong();
+            if (version < ANY_VERSION) {
+                throw new IOException("The batch has a negative version");
+            }
+            int length = data.readInt();
+            byte[] value = length == DELETED_VALUE ? null : readBytes(data, checkLength(length));
+            values.put(key, new Entry(value, version));
+        }
+        return values;
+    }
+
+    /**
+     * @param versions versions by keys, 0 for deleted keys
+     * @return batch of versions
+     */
+    public static byte[] writeVersions(Map<String, Long> versions) {
+        return write(out -> {
+            out.writeInt(versions.size());
+            for (Map.Entry<String, Long> entry : versions.entrySet()) {
+                writeString(out, entry.getKey());
+                out.writeLong(entry.getValue());
+            }
+        });
+    }
+
+    /**
+     * @param in batch of versions
+     * @return versions by keys in the order of the batch
+     * @throws IOException if the batch is malformed or cannot be read
+     */
+    public static Map<String, Long> readVersions(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        int count = readLength(data);
+        Map<String, Long> versions = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            versions.put(readString(data), data.readLong());
+        }
+        return versions;
+    }
+
+    private static byte[] write(BatchWriter writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writer.write(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            // a byte array stream never fails
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return new String(readBytes(in, readLength(in)), StandardCharsets.UTF_8);
+    }
+
+    /*
+     * The bytes are read in chunks, so a corrupted length does not allocate a huge array up front
+     */
+    private static byte[] readBytes(DataInputStream in, int length) throws IOException {
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length != length) {
+            throw new EOFException("The batch ends in the middle of a value");
+        }
+        return bytes;
+    }
+
+    private static int readLength(DataInputStream in) throws IOException {
+        return checkLength(in.readInt());
+    }
+
+    private static int checkLength(int length) throws IOException {
+        if (length < 0) {
+            throw new IOException("The batch has a negative length");
+        }
+        return length;
+    }
+
+    @FunctionalInterface
+    private interface BatchWriter {
+
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Value of a key in a batch with its version
+     */
+    public static class Entry {
+
+        private final byte[] value;
+        private final long version;
+
+        /**
+         * @param value value or null if the key is deleted
+         * @param version
+         */
+        public Entry(byte[] value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+
+        public byte[] getValue() {
+            return value;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package ru.yandex.practicum.tasktracker.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log with snapshots that makes the storage of the key-value server durable.
+ * Every record is framed by its length and checksum, so a record torn by a crash is detected and dropped on recovery.
+ * Once the log grows over the maximum size, the whole state is written to a snapshot and the log starts over.
+ * Records only set or delete keys, so replaying the log over a newer snapshot gives the same state.
+ * Delete records and the snapshot also keep the last version given by the storage,
+ * so versions of deleted keys are not given again after a recovery
+ */
+class KVLog {
+
+    private static final String LOG_FILE = "kv.log";
+    private static final String SNAPSHOT_FILE = "kv.snapshot";
+    private static final String TEMP_EXTENSION = ".tmp";
+
+    private static final byte PUT_RECORD = 1;
+    private static final byte DELETE_RECORD = 2;
+    private static final byte BATCH_RECORD = 3;
+    private static final byte VERSION_RECORD = 4;
+    private static final int FRAME_HEADER_SIZE = Integer.BYTES * 2;
+
+    private final Path logPath;
+    private final Path snapshotPath;
+    private final FsyncPolicy fsyncPolicy;
+    private final Duration fsyncInterval;
+    private final long maxLogSize;
+
+    private FileChannel channel;
+    private long logSize;
+    private ScheduledExecutorService syncer;
+
+    /**
+     * @param directory directory of the log and snapshot files
+     * @param fsyncPolicy
+     * @param fsyncInterval interval of the PERIODIC policy, ignored by other policies
+     * @param maxLogSize log size in bytes after which a snapshot is written
+     */
+    KVLog(Path directory, FsyncPolicy fsyncPolicy, Duration fsyncInterval, long maxLogSize) {
+        this.logPath = directory.resolve(LOG_FILE);
+        this.snapshotPath = directory.resolve(SNAPSHOT_FILE);
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncInterval = fsyncInterval;
+        this.maxLogSize = maxLogSize;
+    }
+
+    /**
+     * Replays the snapshot and the log and opens the log for new records.
+     * A torn record at the end of the log is cut off
+     * @param handler receives the recovered values
+     * @throws IOException
+     */
+    synchronized void open(RecordHandler handler) throws IOException {
+        Files.createDirectories(logPath.getParent());
+
+        if (Files.exists(snapshotPath)) {
+            replay(snapshotPath, handler);
+        }
+
+        channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        logSize = replay(logPath, handler);
+        channel.truncate(logSize);
+        channel.position(logSize);
+
+        if (fsyncPolicy == FsyncPolicy.PERIODIC) {
+            syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "kv-log-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = fsyncInterval.toMillis();
+            syncer.scheduleWithFixedDelay(this::force, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Appends a record that sets a key
+     * @param key
+     * @param value
+     * @param version
+     */
+    synchronized void appendPut(String key, byte[] value, long version) {
+        append(out -> writePut(out, key, value, version));
+    }
+
+    /**
+     * Appends a record that deletes a key
+     * @param key
+     * @param lastVersion last version given by the storage
+     */
+    synchronized void appendDelete(String key, long lastVersion) {
+        append(out -> writeDelete(out, key, lastVersion));
+    }
+
+    /**
+     * Appends one record for a batch, so that the batch is recovered as a whole or not at all
+     * @param values versioned values by keys, a null value deletes the key
+     * @param lastVersion last version given by the storage
+     */
+    synchronized void appendBatch(Map<String, KVStorage.VersionedValue> values, long lastVersion) {
+        append(out -> {
+            out.writeByte(BATCH_RECORD);
+            out.writeInt(values.size());
+            for (Map.Entry<String, KVStorage.VersionedValue> entry : values.entrySet()) {
+                KVStorage.VersionedValue value = entry.getValue();
+                if (value == null) {
+                    writeDelete(out, entry.getKey(), lastVersion);
+                } else {
+                    writePut(out, entry.getKey(), value.getValue(), value.getVersion());
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns whether the log has grown over the maximum size
+     * @return true if a snapshot should be written
+     */
+    synchronized boolean needsSnapshot() {
+        return logSize >= maxLogSize;
+    }
+
+    /**
+     * Writes the whole state to the snapshot and starts the log over.
+     * Must be called while no writes are made to the storage
+     * @param data
+     * @param lastVersion last version given by the storage
+     */
+    synchronized void snapshot(Map<String, KVStorage.VersionedValue> data, long lastVersion) {
+        Path tempPath = Path.of(snapshotPath + TEMP_EXTENSION);
+
+        try (FileChannel snapshotChannel = FileChannel.open(tempPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(snapshotChannel, frame(out -> {
+                out.writeByte(VERSION_RECORD);
+                out.writeLong(lastVersion);
+            }));
+            for (Map.Entry<String, KVStorage.VersionedValue> entry : data.entrySet()) {
+                KVStorage.VersionedValue value = entry.getValue();
+                write(snapshotChannel, frame(out -> writePut(out, entry.getKey(), value.getValue(),
+                        value.getVersion())));
+            }
+            snapshotChannel.force(true);
+
+            Files.move(tempPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+
+            channel.truncate(0);
+            channel.position(0);
+            channel.force(true);
+            logSize = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing the snapshot", e);
+        }
+    }
+
+    /**
+     * Forces the log to disk and closes it
+     */
+    synchronized void close() {
+        if (syncer != null) {
+            syncer.shutdown();
+        }
+
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error closing the log", e);
+        }
+    }
+
+    private synchronized void force() {
+        try {
+            if (channel.isOpen()) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            // the log is forced again on the next run
+        }
+    }
+
+    private void append(RecordWriter writer) {
+        try {
+            ByteBuffer buffer = frame(writer);
+            logSize += buffer.remaining();
+            write(channel, buffer);
+
+            if (fsyncPolicy == FsyncPolicy.EVERY_WRITE) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error writing to the log", e);
+        }
+    }
+
+    private static ByteBuffer frame(RecordWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(new DataOutputStream(bytes));
+        byte[] payload = bytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer buffer = ByteBuffer.allocate(FRAME_HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(payload);
+        return buffer.flip();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /*
+     * Returns the size of the valid part of the file
+     */
+    private static long replay(Path path, RecordHandler handler) throws IOException {
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+            CRC32 crc = new CRC32();
+
+            while (buffer.remaining() >= FRAME_HEADER_SIZE) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    return start;
+                }
+
+                ByteBuffer payload = buffer.duplicate();
+                payload.limit(payload.position() + length);
+                payload = payload.slice();
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != checksum) {
+                    return start;
+                }
+
+                readRecord(payload, handler);
+                buffer.position(buffer.position() + length);
+            }
+
+            return buffer.position();
+        }
+    }
+
+    private static void readRecord(ByteBuffer payload, RecordHandler handler) {
+        byte type = payload.get();
+        if (type == BATCH_RECORD) {
+            int count = payload.getInt();
+            for (int i = 0; i < count; i++) {
+                readRecord(payload, handler);
+            }
+        } else if (type == PUT_RECORD) {
+            long version = payload.getLong();
+            String key = readString(payload);
+            handler.put(key, readBytes(payload), version);
+        } else if (type == VERSION_RECORD) {
+            handler.version(payload.getLong());
+        } else {
+            handler.version(payload.getLong());
+            handler.remove(readString(payload));
+        }
+    }
+
+    private static void writePut(DataOutputStream out, String key, byte[] value, long version) throws IOException {
+        out.writeByte(PUT_RECORD);
+        out.writeLong(version);
+        writeString(out, key);
+        writeBytes(out, value);
+    }
+
+    private static void writeDelete(DataOutputStream out, String key, long lastVersion) throws IOException {
+        out.writeByte(DELETE_RECORD);
+        out.writeLong(lastVersion);
+        writeString(out, key);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        return new String(readBytes(buffer), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Receives the values recovered from the snapshot and the log
+     */
+    interface RecordHandler {
+
+        void put(String key, byte[] value, long version);
+
+        void remove(String key);
+
+        /**
+         * @param lastVersion version that was already given, even if no recovered value has it
+         */
+        void version(long lastVersion);
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+
+        void write(DataOutputStream out) throws IOException;
+    }
+}
@@ -4,58 +4,160 @@ import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpServer;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class KVServer {
 
     public static final int PORT = 8078;
+    /**
+     * Token of the keys shared by all clients that do not register their own token
+     */
+    public static final String DEFAULT_TOKEN = "DEFAULT";
+    private static final int DEFAULT_MAX_TOKENS = 1_000;
     private static final Charset DEFAULT_CHARSET = StandardCharsets.UTF_8;
+    private static final Duration FSYNC_INTERVAL = Duration.ofSeconds(1);
+    private static final long MAX_LOG_SIZE = 64L * 1024 * 1024;
 
-    private final String apiToken;
+    private static final String API_TOKEN_PARAMETER = "API_TOKEN=";
+    private static final String DEBUG_TOKEN = "DEBUG";
+    private static final Set<String> SHARED_TOKENS = Set.of(DEFAULT_TOKEN, DEBUG_TOKEN);
+
+    private final ExecutorMode executorMode;
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final int maxTokens;
     private HttpServer server;
+    private ExecutorService executor;
 
-    private final Map<String, String> data = new HashMap<>();
+    /*
+     * Every token has its own storage, so clients never see or block the keys of other tokens
+     */
+    private final Map<String, KVStorage> storages = new ConcurrentHashMap<>();
 
     public KVServer() {
-        apiToken = generateApiToken();
+        this(ExecutorMode.DISPATCHER);
+    }
+
+    public KVServer(ExecutorMode executorMode) {
+        this(executorMode, null, null);
+    }
+
+    /**
+     * Creates a durable server, which keeps the values of every token in a log with snapshots
+     * and recovers them on every start
+     * @param executorMode
+     * @param directory directory with a subdirectory of the log and snapshot files for every token,
+     *                  null for an in-memory server
+     * @param fsyncPolicy
+     */
+    public KVServer(ExecutorMode executorMode, Path directory, FsyncPolicy fsyncPolicy) {
+        this(executorMode, directory, fsyncPolicy, DEFAULT_MAX_TOKENS);
+    }
+
+    /**
+     * @param executorMode
+     * @param directory directory with a subdirectory of the log and snapshot files for every token,
+     *                  null for an in-memory server
+     * @param fsyncPolicy
+     * @param maxTokens maximum number of registered tokens, further registrations are rejected with 503
+     *                  until a token is unregistered
+     */
+    public KVServer(ExecutorMode executorMode, Path directory, FsyncPolicy fsyncPolicy, int maxTokens) {
+        this.executorMode = executorMode;
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.maxTokens = maxTokens;
     }
 
     public void start() throws IOException {
+        if (directory != null && Files.isDirectory(directory)) {
+            try (Stream<Path> tokenDirectories = Files.list(directory)) {
+                for (Path tokenDirectory : tokenDirectories.filter(Files::isDirectory).collect(Collectors.toList())) {
+                    String token = tokenDirectory.getFileName().toString();
+                    storages.put(token, createStorage(token));
+                }
+            }
+        }
+
         server = HttpServer.create(new InetSocketAddress("localhost", PORT), 0);
+        executor = executorMode.createExecutor("kv-server");
+        server.setExecutor(executor);
         server.createContext("/register", this::register);
+        server.createContext("/unregister", this::unregister);
         server.createContext("/save", this::save);
         server.createContext("/load", this::load);
+        server.createContext("/delete", this::delete);
+        server.createContext("/save-batch", this::saveBatch);
+        server.createContext("/load-batch", this::loadBatch);
         server.start();
     }
 
     public void stop() {
         server.stop(0);
+        if (executor != null) {
+            executor.shutdown();
+        }
+
+        storages.values().forEach(KVStorage::close);
+        // a durable server recovers the storages from disk on the next start
+        if (directory != null) {
+            storages.clear();
+        }
     }
 
+    /**
+     * Returns the approximate memory used by the keys and values of a token
+     * @param token
+     * @return size in bytes, 0 for an unknown token
+     */
+    public long getUsedBytes(String token) {
+        KVStorage storage = storages.get(token);
+        return storage == null ? 0 : storage.getSize();
+    }
+
+    /**
+     * Loads a key. The ETag header of the response holds the version of the value,
+     * a key without a value gets a 404 response
+     */
     private void load(HttpExchange exchange) throws IOException {
         try {
-            if (!hasAuth(exchange)) {
+            KVStorage storage = getStorage(exchange);
+            if (storage == null) {
                 exchange.sendResponseHeaders(403, 0);
                 return;
             }
 
             if ("GET".equals(exchange.getRequestMethod())) {
-                String key = exchange.getRequestURI().getPath().substring("/load/".length());
+                String key = getKey(exchange, "/load/");
                 if (key.isEmpty()) {
                     exchange.sendResponseHeaders(400, 0);
                     return;
                 }
 
-                String value = data.get(key);
+                KVStorage.VersionedValue value = storage.get(key);
                 if (value == null) {
-                    exchange.sendResponseHeaders(400, 0);
+                    exchange.sendResponseHeaders(404, 0);
                     return;
                 }
-                sendText(exchange, value);
+                exchange.getResponseHeaders().add("ETag", toEntityTag(value.getVersion()));
+                sendBytes(exchange, value.getValue(), "application/json");
             } else {
                 exchange.sendResponseHeaders(405, 0);
             }
@@ -64,27 +166,53 @@ public class KVServer {
         }
     }
 
+    /**
+     * Saves a key. With an If-Match header the value is saved only if the key still has the given version,
+     * "0" for a key without a value, otherwise the response is 409.
+     * The ETag header of the response holds the new version
+     */
     private void save(HttpExchange exchange) throws IOException {
         try {
-            if (!hasAuth(exchange)) {
+            KVStorage storage = getStorage(exchange);
+            if (storage == null) {
                 exchange.sendResponseHeaders(403, 0);
                 return;
             }
 
             if ("POST".equals(exchange.getRequestMethod())) {
-                String key = exchange.getRequestURI().getPath().substring("/save/".length());
+                String key = getKey(exchange, "/save/");
                 if (key.isEmpty()) {
                     exchange.sendResponseHeaders(400, 0);
                     return;
                 }
 
-                String value = readText(exchange);
-                if (value.isEmpty()) {
+                byte[] value = exchange.getRequestBody().readAllBytes();
+                if (value.length == 0) {
                     exchange.sendResponseHeaders(400, 0);
                     return;
                 }
 
-                data.put(key, value);
+                String ifMatch = exchange.getRequestHeaders().getFirst("If-Match");
+                Long expectedVersion = ifMatch == null ? null : fromEntityTag(ifMatch);
+                if (ifMatch != null && expectedVersion == null) {
+                    exchange.sendResponseHeaders(400, 0);
+                    return;
+                }
+
+                KVStorage.VersionedValue savedValue;
+                try {
+                    savedValue = expectedVersion == null
+                            ? storage.put(key, value)
+                            : storage.putIfVersion(key, value, expectedVersion);
+                } catch (UncheckedIOException e) {
+                    exchange.sendResponseHeaders(500, 0);
+                    return;
+                }
+                if (savedValue == null) {
+                    exchange.sendResponseHeaders(409, 0);
+                    return;
+                }
+                exchange.getResponseHeaders().add("ETag", toEntityTag(savedValue.getVersion()));
                 exchange.sendResponseHeaders(200, 0);
             } else {
                 exchange.sendResponseHeaders(405, 0);
@@ -94,10 +222,189 @@ public class KVServer {
         }
     }
 
+    private void delete(HttpExchange exchange) throws IOException {
+        try {
+            KVStorage storage = getStorage(exchange);
+            if (storage == null) {
+                exchange.sendResponseHeaders(403, 0);
+                return;
+            }
+
+            if ("DELETE".equals(exchange.getRequestMethod())) {
+                String key = getKey(exchange, "/delete/");
+                if (key.isEmpty()) {
+                    exchange.sendResponseHeaders(400, 0);
+                    return;
+                }
+
+                try {
+                    storage.remove(key);
+                } catch (UncheckedIOException e) {
+                    exchange.sendResponseHeaders(500, 0);
+                    return;
+                }
+                exchange.sendResponseHeaders(200, 0);
+            } else {
+                exchange.sendResponseHeaders(405, 0);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Saves several keys at once. The body is a batch of values in the KVBatchFormat, a deleted value deletes the key.
+     * All keys are applied together, so a batch load never sees only a part of them.
+     * If a key does not have its expected version, none of the keys is saved and the response is 409,
+     * otherwise the response is a batch of the new versions
+     */
+    private void saveBatch(HttpExchange exchange) throws IOException {
+        try {
+            KVStorage storage = getStorage(exchange);
+            if (storage == null) {
+                exchange.sendResponseHeaders(403, 0);
+                return;
+            }
+
+            if ("POST".equals(exchange.getRequestMethod())) {
+                Map<String, KVBatchFormat.Entry> entries;
+                try {
+                    entries = KVBatchFormat.readValues(exchange.getRequestBody());
+                } catch (IOException e) {
+                    exchange.sendResponseHeaders(400, 0);
+                    return;
+                }
+                if (entries.containsKey("")) {
+                    exchange.sendResponseHeaders(400, 0);
+                    return;
+                }
+
+                Map<String, byte[]> values = new LinkedHashMap<>();
+                Map<String, Long> expectedVersions = new HashMap<>();
+                entries.forEach((key, entry) -> {
+                    values.put(key, entry.getValue());
+                    if (entry.getVersion() != KVBatchFormat.ANY_VERSION) {
+                        expectedVersions.put(key, entry.getVersion());
+                    }
+                });
+
+                Map<String, Long> versions;
+                try {
+                    versions = storage.putAllIfVersions(values, expectedVersions);
+                } catch (UncheckedIOException e) {
+                    exchange.sendResponseHeaders(500, 0);
+                    return;
+                }
+                if (versions == null) {
+                    exchange.sendResponseHeaders(409, 0);
+                    return;
+                }
+                sendBytes(exchange, KVBatchFormat.writeVersions(versions), KVBatchFormat.CONTENT_TYPE);
+            } else {
+                exchange.sendResponseHeaders(405, 0);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Loads several keys at once. The body is a batch of keys in the KVBatchFormat,
+     * the response is a batch of the keys found and their values with their versions
+     */
+    private void loadBatch(HttpExchange exchange) throws IOException {
+        try {
+            KVStorage storage = getStorage(exchange);
+            if (storage == null) {
+                exchange.sendResponseHeaders(403, 0);
+                return;
+            }
+
+            if ("POST".equals(exchange.getRequestMethod())) {
+                List<String> keys;
+                try {
+                    keys = KVBatchFormat.readKeys(exchange.getRequestBody());
+                } catch (IOException e) {
+                    exchange.sendResponseHeaders(400, 0);
+                    return;
+                }
+
+                Map<String, KVBatchFormat.Entry> values = new LinkedHashMap<>();
+                storage.getAll(keys).forEach((key, value) ->
+                        values.put(key, new KVBatchFormat.Entry(value.getValue(), value.getVersion())));
+                sendBytes(exchange, KVBatchFormat.writeValues(values), KVBatchFormat.CONTENT_TYPE);
+            } else {
+                exchange.sendResponseHeaders(405, 0);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Registers a client. Every registration gets a new token with its own empty set of keys.
+     * When the server already has the maximum number of tokens, the response is 503
+     */
     private void register(HttpExchange exchange) throws IOException {
         try {
             if ("GET".equals(exchange.getRequestMethod())) {
-                sendText(exchange, apiToken);
+                String token = generateApiToken();
+                boolean isRegistered;
+                try {
+                    synchronized (storages) {
+                        isRegistered = getRegisteredTokenCount() < maxTokens;
+                        if (isRegistered) {
+                            storages.put(token, createStorage(token));
+                        }
+                    }
+                } catch (IOException e) {
+                    exchange.sendResponseHeaders(500, 0);
+                    return;
+                }
+
+                if (isRegistered) {
+                    sendText(exchange, token);
+                } else {
+                    exchange.sendResponseHeaders(503, 0);
+                }
+            } else {
+                exchange.sendResponseHeaders(405, 0);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Unregisters a token and deletes all its keys, also from the disk of a durable server.
+     * The shared tokens cannot be unregistered, the response is 403
+     */
+    private void unregister(HttpExchange exchange) throws IOException {
+        try {
+            if ("DELETE".equals(exchange.getRequestMethod())) {
+                String token = getToken(exchange);
+                if (token == null || SHARED_TOKENS.contains(token)) {
+                    exchange.sendResponseHeaders(403, 0);
+                    return;
+                }
+
+                KVStorage storage;
+                synchronized (storages) {
+                    storage = storages.remove(token);
+                }
+                if (storage == null) {
+                    exchange.sendResponseHeaders(403, 0);
+                    return;
+                }
+
+                storage.close();
+                try {
+                    deleteDirectory(token);
+                } catch (IOException e) {
+                    exchange.sendResponseHeaders(500, 0);
+                    return;
+                }
+                exchange.sendResponseHeaders(200, 0);
             } else {
                 exchange.sendResponseHeaders(405, 0);
             }
@@ -107,21 +414,110 @@ public class KVServer {
     }
 
     private String generateApiToken() {
-        return "" + System.currentTimeMillis();
+        return UUID.randomUUID().toString().replace("-", "");
+    }
+
+    private KVStorage createStorage(String token) throws IOException {
+        KVStorage storage = directory == null
+                ? new KVStorage()
+                : new KVStorage(new KVLog(directory.resolve(token), fsyncPolicy, FSYNC_INTERVAL, MAX_LOG_SIZE));
+        storage.open();
+        return storage;
+    }
+
+    private void deleteDirectory(String token) throws IOException {
+        if (directory == null || !Files.isDirectory(directory.resolve(token))) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.walk(directory.resolve(token))) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /*
+     * Must be called under the lock of the storages
+     */
+    private long getRegisteredTokenCount() {
+        return storages.size() - SHARED_TOKENS.stream().filter(storages::containsKey).count();
+    }
+
+    /*
+     * Returns null if the request has no registered token.
+     * Storages of the shared tokens are created on the first request
+     */
+    private KVStorage getStorage(HttpExchange h) throws IOException {
+        String token = getToken(h);
+        if (token == null) {
+            return null;
+        }
+
+        KVStorage storage = storages.get(token);
+        if (storage == null && SHARED_TOKENS.contains(token)) {
+            synchronized (storages) {
+                storage = storages.get(token);
+                if (storage == null) {
+                    storage = createStorage(token);
+                    storages.put(token, storage);
+                }
+            }
+        }
+        return storage;
     }
 
-    private boolean hasAuth(HttpExchange h) {
+    /*
+     * Returns null if the request has no token
+     */
+    private String getToken(HttpExchange h) {
         String rawQuery = h.getRequestURI().getRawQuery();
-        return rawQuery != null && (rawQuery.contains("API_TOKEN=" + apiToken) || rawQuery.contains("API_TOKEN=DEBUG"));
+        if (rawQuery == null) {
+            return null;
+        }
+
+        for (String parameter : rawQuery.split("&")) {
+            if (parameter.startsWith(API_TOKEN_PARAMETER)) {
+                return parameter.substring(API_TOKEN_PARAMETER.length());
+            }
+        }
+
+        return null;
+    }
+
+    /*
+     * Clients add a slash after the key, it is not a part of the key
+     */
+    private String getKey(HttpExchange exchange, String prefix) {
+        String key = exchange.getRequestURI().getPath().substring(prefix.length());
+        return key.endsWith("/") ? key.substring(0, key.length() - 1) : key;
     }
 
-    private String readText(HttpExchange h) throws IOException {
-        return new String(h.getRequestBody().readAllBytes(), DEFAULT_CHARSET);
+    private String toEntityTag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /*
+     * Returns null if the tag is not a quoted version
+     */
+    private Long fromEntityTag(String entityTag) {
+        if (entityTag.length() < 3 || !entityTag.startsWith("\"") || !entityTag.endsWith("\"")) {
+            return null;
+        }
+
+        try {
+            return Long.parseLong(entityTag, 1, entityTag.length() - 1, 10);
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     private void sendText(HttpExchange h, String text) throws IOException {
-        byte[] resp = text.getBytes(DEFAULT_CHARSET);
-        h.getResponseHeaders().add("Content-Type", "application/json");
+        sendBytes(h, text.getBytes(DEFAULT_CHARSET), "application/json");
+    }
+
+    private void sendBytes(HttpExchange h, byte[] resp, String contentType) throws IOException {
+        h.getResponseHeaders().add("Content-Type", contentType);
         h.sendResponseHeaders(200, resp.length);
         h.getResponseBody().write(resp);
     }
@@ -0,0 +1,344 @@
+package ru.yandex.practicum.tasktracker.server;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe storage of the key-value server.
+ * Operations on single keys and batch reads run concurrently under the shared side of the storage lock,
+ * while batch writes take its exclusive side, so that a batch is applied and read as a whole.
+ * Every write gives the value a new version, versions only grow, also across deletes of the key.
+ * A durable storage writes every change to the log before it becomes visible
+ */
+class KVStorage {
+
+    private final Map<String, VersionedValue> data = new ConcurrentHashMap<>();
+    private final AtomicLong lastVersion = new AtomicLong();
+    private final AtomicLong size = new AtomicLong();
+
+    /*
+     * The shared side guards operations that do not need to see other keys unchanged,
+     * the exclusive side guards batch writes, snapshots and recovery
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock keyLock = lock.readLock();
+    private final Lock batchLock = lock.writeLock();
+
+    private final KVLog log;
+
+    /**
+     * Creates an in-memory storage
+     */
+    KVStorage() {
+        this(null);
+    }
+
+    /**
+     * Creates a durable storage
+     * @param log log of the storage or null for an in-memory storage
+     */
+    KVStorage(KVLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Recovers the values from the log and opens it for writes
+     * @throws IOException
+     */
+    void open() throws IOException {
+        if (log == null) {
+            return;
+        }
+
+        batchLock.lock();
+        try {
+            data.clear();
+            size.set(0);
+            log.open(new KVLog.RecordHandler() {
+                @Override
+                public void put(String key, byte[] value, long version) {
+                    VersionedValue versionedValue = new VersionedValue(value, version);
+                    account(key, data.put(key, versionedValue), versionedValue);
+                    lastVersion.accumulateAndGet(version, Math::max);
+                }
+
+                @Override
+                public void remove(String key) {
+                    account(key, data.remove(key), null);
+                }
+
+                @Override
+                public void version(long version) {
+                    lastVersion.accumulateAndGet(version, Math::max);
+                }
+            });
+        } finally {
+            batchLock.unlock();
+        }
+    }
+
+    /**
+     * Closes the log of the storage
+     */
+    void close() {
+        if (log == null) {
+            return;
+        }
+
+        batchLock.lock();
+        try {
+            log.close();
+        } finally {
+            batchLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the approximate memory used by the keys and values
+     * @return size in bytes
+     */
+    long getSize() {
+        return size.get();
+    }
+
+    /**
+     * Returns a value by key
+     * @param key
+     * @return value or null if there was no one
+     */
+    VersionedValue get(String key) {
+        keyLock.lock();
+        try {
+            return data.get(key);
+        } finally {
+            keyLock.unlock();
+        }
+    }
+
+    /**
+     * Saves a value by key. The storage keeps the given array, so it must not be changed afterwards
+     * @param key
+     * @param value
+     * @return saved value with its version
+     */
+    VersionedValue put(String key, byte[] value) {
+        VersionedValue versionedValue;
+
+        keyLock.lock();
+        try {
+            versionedValue = putValue(key, value);
+        } finally {
+            keyLock.unlock();
+        }
+
+        snapshotIfNeeded();
+        return versionedValue;
+    }
+
+    /**
+     * Saves a value by key only if the current value has the expected version
+     * @param key
+     * @param value
+     * @param expectedVersion version of the current value, 0 if the key must have no value
+     * @return saved value with its version or null if the current version differs
+     */
+    VersionedValue putIfVersion(String key, byte[] value, long expectedVersion) {
+        VersionedValue[] savedValue = new VersionedValue[1];
+
+        keyLock.lock();
+        try {
+            data.compute(key, (k, previous) -> {
+                long currentVersion = previous == null ? 0 : previous.getVersion();
+                if (currentVersion != expectedVersion) {
+                    return previous;
+                }
+                savedValue[0] = createValue(key, value);
+                account(key, previous, savedValue[0]);
+                return savedValue[0];
+            });
+        } finally {
+            keyLock.unlock();
+        }
+
+        snapshotIfNeeded();
+        return savedValue[0];
+    }
+
+    /**
+     * Deletes a value by key
+     * @param key
+     */
+    void remove(String key) {
+        keyLock.lock();
+        try {
+            data.computeIfPresent(key, (k, previous) -> {
+                if (log != null) {
+                    log.appendDelete(key, lastVersion.get());
+                }
+                account(key, previous, null);
+                return null;
+            });
+        } finally {
+            keyLock.unlock();
+        }
+
+        snapshotIfNeeded();
+    }
+
+    /**
+     * Saves several values at once. The storage keeps the given arrays, so they must not be changed afterwards
+     * @param values values by keys, a null value deletes the key
+     */
+    void putAll(Map<String, byte[]> values) {
+        putAllIfVersions(values, Map.of());
+    }
+
+    /**
+     * Saves several values at once only if every key has the expected version, otherwise saves none of them.
+     * The storage keeps the given arrays, so they must not be changed afterwards
+     * @param values values by keys, a null value deletes the key
+     * @param expectedVersions versions of the current values by keys, 0 if the key must have no value.
+     *                         Keys without an expected version are saved regardless of their version
+     * @return new versions by keys, 0 for deleted keys, or null if a key has another version
+     */
+    Map<String, Long> putAllIfVersions(Map<String, byte[]> values, Map<String, Long> expectedVersions) {
+        Map<String, Long> versions = new LinkedHashMap<>();
+
+        batchLock.lock();
+        try {
+            for (Map.Entry<String, Long> entry : expectedVersions.entrySet()) {
+                VersionedValue current = data.get(entry.getKey());
+                if ((current == null ? 0 : current.getVersion()) != entry.getValue()) {
+                    return null;
+                }
+            }
+
+            Map<String, VersionedValue> versionedValues = new LinkedHashMap<>();
+            for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+                byte[] value = entry.getValue();
+                versionedValues.put(entry.getKey(),
+                        value == null ? null : new VersionedValue(value, lastVersion.incrementAndGet()));
+            }
+
+            // the whole batch is logged as one record before any of its values becomes visible
+            if (log != null) {
+                log.appendBatch(versionedValues, lastVersion.get());
+            }
+
+            for (Map.Entry<String, VersionedValue> entry : versionedValues.entrySet()) {
+                if (entry.getValue() == null) {
+                    account(entry.getKey(), data.remove(entry.getKey()), null);
+                    versions.put(entry.getKey(), 0L);
+                } else {
+                    account(entry.getKey(), data.put(entry.getKey(), entry.getValue()), entry.getValue());
+                    versions.put(entry.getKey(), entry.getValue().getVersion());
+                }
+            }
+
+            if (log != null && log.needsSnapshot()) {
+                log.snapshot(data, lastVersion.get());
+            }
+        } finally {
+            batchLock.unlock();
+        }
+
+        return versions;
+    }
+
+    /**
+     * Returns several values at once. A batch write is seen as a whole or not at all,
+     * while single keys can change during the read
+     * @param keys
+     * @return values by keys, keys without a value are missing
+     */
+    Map<String, VersionedValue> getAll(Collection<String> keys) {
+        Map<String, VersionedValue> values = new LinkedHashMap<>();
+
+        keyLock.lock();
+        try {
+            for (String key : keys) {
+                VersionedValue value = data.get(key);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+        } finally {
+            keyLock.unlock();
+        }
+
+        return values;
+    }
+
+    private VersionedValue putValue(String key, byte[] value) {
+        return data.compute(key, (k, previous) -> {
+            VersionedValue versionedValue = createValue(key, value);
+            account(key, previous, versionedValue);
+            return versionedValue;
+        });
+    }
+
+    private void account(String key, VersionedValue previous, VersionedValue current) {
+        size.addAndGet(sizeOf(key, current) - sizeOf(key, previous));
+    }
+
+    private static long sizeOf(String key, VersionedValue value) {
+        return value == null ? 0 : (long) key.length() * Character.BYTES + value.getValue().length;
+    }
+
+    /*
+     * Must be called inside compute of the key,
+     * so that concurrent writes of a key get versions and log records in their order
+     */
+    private VersionedValue createValue(String key, byte[] value) {
+        VersionedValue versionedValue = new VersionedValue(value, lastVersion.incrementAndGet());
+        if (log != null) {
+            log.appendPut(key, value, versionedValue.getVersion());
+        }
+        return versionedValue;
+    }
+
+    private void snapshotIfNeeded() {
+        if (log == null || !log.needsSnapshot()) {
+            return;
+        }
+
+        batchLock.lock();
+        try {
+            if (log.needsSnapshot()) {
+                log.snapshot(data, lastVersion.get());
+            }
+        } finally {
+            batchLock.unlock();
+        }
+    }
+
+    /**
+     * Value of a key with the version of its last write.
+     * The value is kept as the raw bytes of the request, so it is sent back without decoding
+     */
+    static class VersionedValue {
+
+        private final byte[] value;
+        private final long version;
+
+        VersionedValue(byte[] value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+
+        byte[] getValue() {
+            return value;
+        }
+
+        long getVersion() {
+            return version;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package ru.yandex.practicum.tasktracker.server;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resolves endpoints of the task server by a table built once on start.
+ * An endpoint is found by the exact path, the request method
+ * and whether the query contains an id or other parameters,
+ * so no regular expressions are compiled or matched per request
+ */
+class Router {
+
+    static final String ID_PARAMETER = "id=";
+
+    private final Map<String, Route> routes = new HashMap<>();
+
+    /**
+     * Adds an endpoint handling requests without a query
+     * @param path
+     * @param endpoint
+     * @return this router
+     */
+    Router add(String path, Endpoint endpoint) {
+        routes.computeIfAbsent(path, key -> new Route()).endpoints.put(endpoint.getRequestMethod(), endpoint);
+        return this;
+    }
+
+    /**
+     * Adds an endpoint handling requests with the query "id=[digits]"
+     * @param path
+     * @param endpoint
+     * @return this router
+     */
+    Router addWithId(String path, Endpoint endpoint) {
+        routes.computeIfAbsent(path, key -> new Route()).idEndpoints.put(endpoint.getRequestMethod(), endpoint);
+        return this;
+    }
+
+    /**
+     * Adds an endpoint handling requests with any other query, such as paging parameters
+     * @param path
+     * @param endpoint
+     * @return this router
+     */
+    Router addWithQuery(String path, Endpoint endpoint) {
+        routes.computeIfAbsent(path, key -> new Route()).queryEndpoints.put(endpoint.getRequestMethod(), endpoint);
+        return this;
+    }
+
+    /**
+     * Returns the endpoint for a request
+     * @param path path without the query
+     * @param query raw query or null if there was no one
+     * @param requestMethod
+     * @return endpoint or UNKNOWN if there was no one
+     */
+    Endpoint resolve(String path, String query, String requestMethod) {
+        Route route = routes.get(path);
+        if (route == null) {
+            return Endpoint.UNKNOWN;
+        }
+
+        Map<String, Endpoint> endpoints;
+        if (query == null) {
+            endpoints = route.endpoints;
+        } else if (isIdQuery(query)) {
+            endpoints = route.idEndpoints;
+        } else {
+            endpoints = route.queryEndpoints;
+        }
+
+        return endpoints.getOrDefault(requestMethod, Endpoint.UNKNOWN);
+    }
+
+    /**
+     * Returns the id from a query checked by the router
+     * @param query
+     * @return id
+     * @throws NumberFormatException if the id is out of the int range
+     */
+    static int getId(String query) {
+        return Integer.parseInt(query, ID_PARAMETER.length(), query.length(), 10);
+    }
+
+    /**
+     * Returns whether a query is routed as an id, but the id is out of the int range
+     * @param query raw query or null if there was no one
+     * @return true if the request has to be rejected
+     */
+    static boolean isIdOutOfRange(String query) {
+        if (query == null || !isIdQuery(query)) {
+            return false;
+        }
+
+        try {
+            getId(query);
+            return false;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /*
+     * Any number of digits is routed as an id, so that the routing does not depend on the value of the id
+     */
+    private static boolean isIdQuery(String query) {
+        if (!query.startsWith(ID_PARAMETER) || query.length() == ID_PARAMETER.length()) {
+            return false;
+        }
+
+        for (int i = ID_PARAMETER.length(); i < query.length(); i++) {
+            char character = query.charAt(i);
+            if (character < '0' || character > '9') {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static class Route {
+
+        private final Map<String, Endpoint> endpoints = new HashMap<>();
+        private final Map<String, Endpoint> idEndpoints = new HashMap<>();
+        private final Map<String, Endpoint> queryEndpoints = new HashMap<>();
+    }
+}
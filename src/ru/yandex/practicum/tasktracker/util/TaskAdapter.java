@@ -7,8 +7,6 @@ import ru.yandex.practicum.tasktracker.manager.TaskManager;
 import ru.yandex.practicum.tasktracker.model.Task;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.stream.Stream;
 
 public class TaskAdapter extends TypeAdapter<Task> {
 
@@ -25,12 +23,6 @@ public class TaskAdapter extends TypeAdapter<Task> {
 
     @Override
     public Task read(JsonReader jsonReader) throws IOException {
-        final int nextInt = jsonReader.nextInt();
-
-        return Stream.of(taskManager.getTasks(), taskManager.getEpics(), taskManager.getSubTasks())
-                .flatMap(List::stream)
-                .filter(task -> nextInt == task.getId())
-                .findFirst()
-                .orElse(null);
+        return taskManager.findTaskById(jsonReader.nextInt());
     }
 }
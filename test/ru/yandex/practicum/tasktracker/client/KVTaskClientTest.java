@@ -0,0 +1,272 @@
+package ru.yandex.practicum.tasktracker.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.tasktracker.manager.exception.HttpRequestSendException;
+import ru.yandex.practicum.tasktracker.server.ExecutorMode;
+import ru.yandex.practicum.tasktracker.server.FsyncPolicy;
+import ru.yandex.practicum.tasktracker.server.KVServer;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KVTaskClientTest {
+
+    private static final String URL = "http://localhost:" + KVServer.PORT;
+
+    private KVServer kvServer;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        kvServer = new KVServer();
+        kvServer.start();
+    }
+
+    @AfterEach
+    void serverStop() {
+        kvServer.stop();
+    }
+
+    @Test
+    void load_shouldReturnSavedValues_withOneClientForAllRequests() {
+        KVTaskClient client = new KVTaskClient(URL);
+
+        for (int i = 0; i < 10; i++) {
+            client.put("key" + i, "value" + i);
+        }
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("value" + i, client.load("key" + i));
+        }
+    }
+
+    @Test
+    void load_shouldReturnTheSameText_ifTheValueIsNotAscii() {
+        KVTaskClient client = new KVTaskClient(URL);
+        String value = "{\"name\":\"Задача \uD83D\uDE80\"}";
+
+        client.put("key", value);
+        client.putAll(Map.of("batchKey", value));
+
+        assertEquals(value, client.load("key"));
+        assertEquals(Map.of("key", value, "batchKey", value), client.loadAll(List.of("key", "batchKey")));
+    }
+
+    @Test
+    void put_shouldSaveTheValue_ifTheExpectedVersionIsCurrent() {
+        KVTaskClient client = new KVTaskClient(URL);
+
+        assertTrue(client.put("key", "value1", 0));
+        KVTaskClient.VersionedValue value = client.loadVersioned("key");
+
+        assertEquals("value1", value.getValue());
+        assertTrue(client.put("key", "value2", value.getVersion()));
+        assertEquals("value2", client.load("key"));
+        assertTrue(client.loadVersioned("key").getVersion() > value.getVersion());
+    }
+
+    @Test
+    void loadVersioned_shouldReturnVersion0_onlyIfTheKeyHasNoValue() {
+        KVTaskClient client = KVTaskClient.register(URL);
+
+        assertEquals(0, client.loadVersioned("key").getVersion());
+
+        client.unregister();
+
+        assertThrows(HttpRequestSendException.class, () -> client.loadVersioned("key"));
+    }
+
+    @Test
+    void put_shouldNotOverwriteTheValue_ifAnotherClientHasSavedItFirst() {
+        KVTaskClient firstClient = new KVTaskClient(URL);
+        KVTaskClient secondClient = new KVTaskClient(URL);
+        firstClient.put("key", "value");
+
+        long version = firstClient.loadVersioned("key").getVersion();
+        assertEquals(version, secondClient.loadVersioned("key").getVersion());
+
+        assertTrue(firstClient.put("key", "first", version));
+        assertFalse(secondClient.put("key", "second", version));
+        assertFalse(secondClient.put("key", "second", 0));
+        assertEquals("first", secondClient.load("key"));
+    }
+
+    @Test
+    void putAll_shouldNotOverwriteTheValues_ifAnotherClientHasSavedOneOfThemFirst() {
+        KVTaskClient firstClient = new KVTaskClient(URL);
+        KVTaskClient secondClient = new KVTaskClient(URL);
+        firstClient.putAll(Map.of("key1", "value1", "key2", "value2"));
+
+        Map<String, KVTaskClient.VersionedValue> values = secondClient.loadAllVersioned(List.of("key1", "key2"));
+        Map<String, Long> versions = Map.of("key1", values.get("key1").getVersion(),
+                "key2", values.get("key2").getVersion());
+
+        Map<String, Long> savedVersions = firstClient.putAll(Map.of("key1", "first"), versions);
+        assertTrue(savedVersions.get("key1") > versions.get("key1"));
+
+        assertNull(secondClient.putAll(Map.of("key1", "second", "key2", "second"), versions));
+        assertEquals("first", secondClient.load("key1"));
+        assertEquals("value2", secondClient.load("key2"));
+        assertNull(secondClient.putAllAsync(Map.of("key1", "second"), versions).join());
+    }
+
+    @Test
+    void load_shouldNotReturnValuesOfAnotherToken() {
+        KVTaskClient firstClient = KVTaskClient.register(URL);
+        KVTaskClient secondClient = KVTaskClient.register(URL);
+
+        firstClient.put("tasks", "[1]");
+        secondClient.put("tasks", "[2]");
+
+        assertNotEquals(firstClient.getToken(), secondClient.getToken());
+        assertEquals("[1]", firstClient.load("tasks"));
+        assertEquals("[2]", secondClient.load("tasks"));
+        assertEquals(("tasks".length() * Character.BYTES) + 3, kvServer.getUsedBytes(firstClient.getToken()));
+    }
+
+    @Test
+    void load_shouldReturnValuesOfTheTokenSavedBeforeRestart_withDurableServer(@TempDir Path directory)
+            throws IOException {
+        kvServer.stop();
+        kvServer = new KVServer(ExecutorMode.DISPATCHER, directory, FsyncPolicy.NEVER);
+        kvServer.start();
+
+        KVTaskClient client = KVTaskClient.register(URL);
+        client.put("key", "value");
+        client.putAll(Map.of("batchKey", "batchValue"));
+
+        kvServer.stop();
+        kvServer.start();
+
+        KVTaskClient restartedClient = new KVTaskClient(URL, client.getToken());
+        assertEquals("value", restartedClient.load("key"));
+        assertEquals("batchValue", restartedClient.load("batchKey"));
+        assertEquals("", KVTaskClient.register(URL).load("key"));
+    }
+
+    @Test
+    void unregister_shouldDeleteTheKeysOfTheToken_withDurableServer(@TempDir Path directory) throws IOException {
+        kvServer.stop();
+        kvServer = new KVServer(ExecutorMode.DISPATCHER, directory, FsyncPolicy.NEVER);
+        kvServer.start();
+
+        KVTaskClient client = KVTaskClient.register(URL);
+        client.put("key", "value");
+        client.unregister();
+
+        assertFalse(Files.exists(directory.resolve(client.getToken())));
+        assertEquals(0, kvServer.getUsedBytes(client.getToken()));
+        assertThrows(HttpRequestSendException.class, client::unregister);
+
+        kvServer.stop();
+        kvServer.start();
+
+        assertEquals("", new KVTaskClient(URL, client.getToken()).load("key"));
+    }
+
+    @Test
+    void unregister_shouldThrowAnException_ifTheTokenIsShared() {
+        KVTaskClient client = new KVTaskClient(URL);
+        client.put("key", "value");
+
+        assertThrows(HttpRequestSendException.class, client::unregister);
+        assertEquals("value", client.load("key"));
+    }
+
+    @Test
+    void register_shouldThrowAnException_ifTheServerHasTheMaximumNumberOfTokens() throws IOException {
+        kvServer.stop();
+        kvServer = new KVServer(ExecutorMode.DISPATCHER, null, null, 2);
+        kvServer.start();
+
+        new KVTaskClient(URL).put("key", "value");
+        KVTaskClient firstClient = KVTaskClient.register(URL);
+        KVTaskClient.register(URL);
+
+        assertThrows(HttpRequestSendException.class, () -> KVTaskClient.register(URL));
+
+        firstClient.unregister();
+
+        assertTrue(KVTaskClient.register(URL).getToken().length() > 0);
+    }
+
+    @Test
+    void loadAll_shouldReturnValuesSavedByPutAll() {
+        KVTaskClient client = new KVTaskClient(URL);
+        client.put("key1", "value1");
+
+        Map<String, String> values = new HashMap<>();
+        values.put("key1", null);
+        values.put("key2", "value2");
+        values.put("key3", "value3");
+        client.putAll(values);
+
+        assertEquals(Map.of("key2", "value2", "key3", "value3"),
+                client.loadAll(List.of("key1", "key2", "key3", "key4")));
+        assertEquals("", client.load("key1"));
+        assertEquals("value2", client.load("key2"));
+    }
+
+    @Test
+    void loadAll_shouldThrowAnException_ifTheTokenIsNotRegistered() {
+        KVTaskClient client = KVTaskClient.register(URL);
+        client.put("key", "value");
+        client.unregister();
+
+        assertThrows(HttpRequestSendException.class, () -> client.loadAll(List.of("key")));
+    }
+
+    @Test
+    void load_shouldReturnValuesOfAllConcurrentClients_withFixedPoolExecutor()
+            throws IOException, InterruptedException {
+        kvServer.stop();
+        kvServer = new KVServer(ExecutorMode.FIXED_POOL);
+        kvServer.start();
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            String key = "key" + i;
+            threads.add(new Thread(() -> {
+                KVTaskClient client = new KVTaskClient(URL);
+                for (int j = 0; j < 20; j++) {
+                    client.put(key, "value" + j);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        KVTaskClient client = new KVTaskClient(URL);
+        for (int i = 0; i < 8; i++) {
+            assertEquals("value19", client.load("key" + i));
+        }
+    }
+
+    @Test
+    void load_shouldReturnSavedValue_withHttp2Version() {
+        KVTaskClient client = new KVTaskClient(URL, HttpClient.Version.HTTP_2, Duration.ofSeconds(1),
+                Duration.ofSeconds(5));
+
+        client.put("key", "Значение");
+
+        assertEquals("Значение", client.load("key"));
+    }
+}
@@ -0,0 +1,98 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompactHistoryManagerTest {
+
+    private final CompactHistoryManager historyManager = new CompactHistoryManager();
+
+    @Test
+    void getHistory_shouldReturnEmptyHistory() {
+        assertTrue(historyManager.getHistory().isEmpty());
+    }
+
+    @Test
+    void add_shouldMoveTaskToTheEnd_ifTaskAlreadyExistsInHistory() {
+        Task task1 = createTask(1);
+        Task task2 = createTask(2);
+        Task task3 = createTask(3);
+
+        historyManager.add(task1);
+        historyManager.add(task2);
+        historyManager.add(task3);
+        historyManager.add(task1);
+
+        assertEquals(List.of(task2, task3, task1), historyManager.getHistory());
+    }
+
+    @Test
+    void remove_shouldReuseFreedSlots_andKeepOrder() {
+        for (int id = 1; id <= 5; id++) {
+            historyManager.add(createTask(id));
+        }
+        historyManager.removeAll(Set.of(1, 3, 5));
+        historyManager.add(createTask(6));
+        historyManager.add(createTask(7));
+
+        assertEquals(List.of(2, 4, 6, 7), getIds(historyManager.getHistory()));
+    }
+
+    @Test
+    void add_shouldEvictTheLeastRecentlyViewedTask_ifHistoryIsFull() {
+        CompactHistoryManager boundedHistoryManager = new CompactHistoryManager(2);
+
+        boundedHistoryManager.add(createTask(1));
+        boundedHistoryManager.add(createTask(2));
+        boundedHistoryManager.add(createTask(1));
+        boundedHistoryManager.add(createTask(3));
+
+        assertEquals(List.of(1, 3), getIds(boundedHistoryManager.getHistory()));
+    }
+
+    @Test
+    void getHistory_shouldMatchInMemoryHistoryManager_afterRandomOperations() {
+        InMemoryHistoryManager expectedHistoryManager = new InMemoryHistoryManager(500);
+        CompactHistoryManager actualHistoryManager = new CompactHistoryManager(500);
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100_000; i++) {
+            int id = random.nextInt(2_000) - 1_000;
+            int operation = random.nextInt(10);
+            if (operation < 7) {
+                Task task = createTask(id);
+                expectedHistoryManager.add(task);
+                actualHistoryManager.add(task);
+            } else if (operation < 9) {
+                expectedHistoryManager.remove(id);
+                actualHistoryManager.remove(id);
+            } else {
+                Task task = createTask(id);
+                task.setName("Version " + i);
+                expectedHistoryManager.replace(task);
+                actualHistoryManager.replace(task);
+            }
+        }
+
+        assertEquals(expectedHistoryManager.getHistory(), actualHistoryManager.getHistory());
+        assertEquals(expectedHistoryManager.getHistory(100, 50), actualHistoryManager.getHistory(100, 50));
+    }
+
+    private List<Integer> getIds(List<Task> history) {
+        return history.stream().map(Task::getId).collect(Collectors.toList());
+    }
+
+    private Task createTask(int id) {
+        Task task = new Task();
+        task.setId(id);
+        return task;
+    }
+}
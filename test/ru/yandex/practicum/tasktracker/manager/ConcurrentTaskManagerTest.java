@@ -0,0 +1,350 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.manager.exception.TaskIntersectionException;
+import ru.yandex.practicum.tasktracker.model.Epic;
+import ru.yandex.practicum.tasktracker.model.Status;
+import ru.yandex.practicum.tasktracker.model.SubTask;
+import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskType;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrentTaskManagerTest {
+
+    private static final int THREAD_COUNT = 8;
+    private static final int TASKS_PER_THREAD = 100;
+    private static final int MOVES_PER_THREAD = 100_000;
+
+    private ConcurrentTaskManager taskManager;
+
+    @BeforeEach
+    void setUp() {
+        taskManager = new ConcurrentTaskManager();
+    }
+
+    @Test
+    void getTaskById_shouldReturnTheTaskAndAddItToHistory() {
+        Task task = createTask(null);
+        taskManager.createTask(task);
+
+        assertEquals(task, taskManager.getTaskById(task.getId()));
+        assertEquals(List.of(task), taskManager.getTasks());
+        assertEquals(List.of(task), taskManager.getHistory());
+        assertEquals(TaskType.TASK, taskManager.getType(task.getId()));
+    }
+
+    @Test
+    void deleteTaskById_shouldRemoveTheTaskFromHistoryAndSchedule() {
+        Task task = createTask(LocalDateTime.of(2022, 12, 22, 11, 0));
+        taskManager.createTask(task);
+        taskManager.getTaskById(task.getId());
+
+        taskManager.deleteTaskById(task.getId());
+
+        assertTrue(taskManager.getTasks().isEmpty());
+        assertTrue(taskManager.getHistory().isEmpty());
+        assertTrue(taskManager.getPrioritizedTasks().isEmpty());
+        assertNull(taskManager.findTaskById(task.getId()));
+    }
+
+    @Test
+    void getPrioritizedTasks_shouldKeepOneEntryPerTask_ifTheStartTimeIsChangedInPlace() {
+        Task firstTask = createTask(LocalDateTime.of(2022, 12, 22, 11, 0));
+        Task secondTask = createTask(LocalDateTime.of(2022, 12, 22, 12, 0));
+        taskManager.createTask(firstTask);
+        taskManager.createTask(secondTask);
+
+        firstTask.setStartTime(LocalDateTime.of(2022, 12, 22, 13, 0));
+        taskManager.updateTask(firstTask);
+
+        assertEquals(List.of(secondTask, firstTask), List.copyOf(taskManager.getPrioritizedTasks()));
+        assertThrows(TaskIntersectionException.class,
+                () -> taskManager.createTask(createTask(LocalDateTime.of(2022, 12, 22, 13, 10))));
+    }
+
+    @Test
+    void updateSubTask_shouldUpdateTheStatusOfTheEpic() {
+        Epic epic = new Epic();
+        taskManager.createEpic(epic);
+        SubTask subTask = createSubTask(epic, Status.NEW);
+        taskManager.createSubTask(subTask);
+
+        SubTask updatedSubTask = createSubTask(epic, Status.DONE);
+        updatedSubTask.setId(subTask.getId());
+        taskManager.updateSubTask(updatedSubTask);
+
+        assertEquals(Status.DONE, taskManager.getEpicById(epic.getId()).getStatus());
+        assertEquals(List.of(updatedSubTask), taskManager.getSubTasksByEpic(epic.getId()));
+
+        taskManager.deleteEpicById(epic.getId());
+
+        assertTrue(taskManager.getSubTasks().isEmpty());
+        assertTrue(taskManager.getHistory().isEmpty());
+    }
+
+    @Test
+    void createTask_shouldAssignUniqueIds_ifCalledConcurrently() throws InterruptedException {
+        runConcurrently(() -> {
+            for (int i = 0; i < TASKS_PER_THREAD; i++) {
+                taskManager.createTask(createTask(null));
+            }
+        });
+
+        List<Integer> ids = taskManager.getTasks().stream()
+                .map(Task::getId)
+                .distinct()
+                .collect(Collectors.toList());
+
+        assertEquals(THREAD_COUNT * TASKS_PER_THREAD, ids.size());
+        assertEquals(THREAD_COUNT * TASKS_PER_THREAD, taskManager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void createSubTask_shouldLinkAllSubTasksToTheEpic_ifCalledConcurrently() throws InterruptedException {
+        Epic epic = new Epic();
+        taskManager.createEpic(epic);
+
+        runConcurrently(() -> {
+            for (int i = 0; i < TASKS_PER_THREAD; i++) {
+                taskManager.createSubTask(createSubTask(epic, Status.DONE));
+            }
+        });
+
+        assertEquals(THREAD_COUNT * TASKS_PER_THREAD, taskManager.getSubTasksByEpic(epic.getId()).size());
+        assertEquals(Status.DONE, epic.getStatus());
+    }
+
+    @Test
+    void createTask_shouldAcceptOnlyOneOfIntersectingTasks_ifCalledConcurrently() throws InterruptedException {
+        AtomicInteger intersections = new AtomicInteger();
+        LocalDateTime startTime = LocalDateTime.of(2022, 12, 22, 11, 0);
+
+        runConcurrently(() -> {
+            try {
+                taskManager.createTask(createTask(startTime));
+            } catch (TaskIntersectionException e) {
+                intersections.incrementAndGet();
+            }
+        });
+
+        assertEquals(THREAD_COUNT - 1, intersections.get());
+        assertEquals(1, taskManager.getPrioritizedTasks().size());
+    }
+
+    @Test
+    void deleteEpicById_shouldRemoveTheEpicWithItsSubTasks_ifSubTasksAreChangedConcurrently()
+            throws InterruptedException {
+        Epic epic = new Epic();
+        taskManager.createEpic(epic);
+        List<SubTask> subTasks = new ArrayList<>();
+        for (int i = 0; i < TASKS_PER_THREAD; i++) {
+            SubTask subTask = createSubTask(epic, Status.NEW);
+            taskManager.createSubTask(subTask);
+            subTasks.add(subTask);
+        }
+
+        Thread deleter = new Thread(() -> taskManager.deleteEpicById(epic.getId()));
+        runConcurrently(() -> {
+            subTasks.forEach(subTask -> taskManager.getSubTaskById(subTask.getId()));
+            subTasks.forEach(subTask -> taskManager.deleteSubTaskById(subTask.getId()));
+        }, deleter);
+
+        assertTrue(taskManager.getEpics().isEmpty());
+        assertTrue(taskManager.getSubTasks().isEmpty());
+        assertTrue(taskManager.getPrioritizedTasks().isEmpty());
+        assertTrue(taskManager.getHistory().isEmpty());
+    }
+
+    @Test
+    void getTaskById_shouldKeepAllViewsOfEveryUser_ifUsersViewConcurrently() throws InterruptedException {
+        for (int i = 0; i < TASKS_PER_THREAD; i++) {
+            taskManager.createTask(createTask(null));
+        }
+        List<Task> tasks = taskManager.getTasks();
+        AtomicInteger userNumber = new AtomicInteger();
+
+        runConcurrently(() -> {
+            String user = "user" + userNumber.incrementAndGet();
+            tasks.forEach(task -> taskManager.getTaskById(task.getId(), user));
+        });
+
+        for (int i = 1; i <= THREAD_COUNT; i++) {
+            assertEquals(tasks, taskManager.getHistory("user" + i, 0, Integer.MAX_VALUE));
+        }
+        assertTrue(taskManager.getHistory().isEmpty());
+    }
+
+    @Test
+    void getHistory_shouldKeepOnlyTheLastViewOfEveryTask_ifViewedConcurrently() throws InterruptedException {
+        for (int i = 0; i < TASKS_PER_THREAD; i++) {
+            taskManager.createTask(createTask(null));
+        }
+        List<Task> tasks = taskManager.getTasks();
+
+        runConcurrently(() -> tasks.forEach(task -> taskManager.getTaskById(task.getId())));
+        Task lastViewed = tasks.get(0);
+        taskManager.getTaskById(lastViewed.getId());
+
+        List<Task> history = taskManager.getHistory();
+        assertEquals(tasks.size(), history.size());
+        assertEquals(tasks.size(), history.stream().distinct().count());
+        assertEquals(lastViewed, history.get(history.size() - 1));
+    }
+
+    @Test
+    void getHistory_shouldNotContainDeletedTasks_ifViewsWereNotDrainedYet() {
+        Task task = createTask(null);
+        taskManager.createTask(task);
+        taskManager.getTaskById(task.getId());
+
+        Task updatedTask = createTask(null);
+        updatedTask.setId(task.getId());
+        updatedTask.setStatus(Status.DONE);
+        taskManager.updateTask(updatedTask);
+
+        assertEquals(List.of(updatedTask), taskManager.getHistory());
+
+        taskManager.getTaskById(task.getId());
+        taskManager.deleteTaskById(task.getId());
+
+        assertTrue(taskManager.getHistory().isEmpty());
+    }
+
+    @Test
+    void createSubTask_shouldThrowAnException_ifTheEpicIsNotFound() {
+        Epic epic = new Epic();
+        epic.setId(100);
+
+        assertThrows(NullPointerException.class, () -> taskManager.createSubTask(createSubTask(epic, Status.NEW)));
+        assertTrue(taskManager.getSubTasks().isEmpty());
+        assertTrue(taskManager.getPrioritizedTasks().isEmpty());
+    }
+
+    @Test
+    void updateSubTask_shouldThrowAnException_ifTheEpicIsNotFound() {
+        Epic epic = new Epic();
+        taskManager.createEpic(epic);
+        SubTask subTask = createSubTask(epic, Status.NEW);
+        taskManager.createSubTask(subTask);
+
+        Epic missingEpic = new Epic();
+        missingEpic.setId(100);
+        SubTask movedSubTask = createSubTask(missingEpic, Status.DONE);
+        movedSubTask.setId(subTask.getId());
+
+        assertThrows(NullPointerException.class, () -> taskManager.updateSubTask(movedSubTask));
+        assertEquals(List.of(subTask), taskManager.getSubTasks());
+        assertEquals(List.of(subTask), taskManager.getSubTasksByEpic(epic.getId()));
+        assertEquals(List.of(subTask), List.copyOf(taskManager.getPrioritizedTasks()));
+    }
+
+    @Test
+    void getEpics_shouldReturnSnapshotsThatCanBeSerialized_ifSubTasksAreAddedConcurrently()
+            throws InterruptedException {
+        Epic epic = new Epic();
+        taskManager.createEpic(epic);
+        Gson gson = Managers.getEpicGson(taskManager);
+
+        Thread reader = new Thread(() -> {
+            for (int i = 0; i < TASKS_PER_THREAD; i++) {
+                Epic snapshot = taskManager.getEpicById(epic.getId());
+                gson.toJson(taskManager.getEpics());
+                assertEquals(snapshot.getSubTasks().size(), gson.fromJson(gson.toJson(snapshot), Epic.class)
+                        .getSubTasks().size());
+            }
+        });
+        List<Throwable> errors = new ArrayList<>();
+        reader.setUncaughtExceptionHandler((thread, e) -> errors.add(e));
+
+        runConcurrently(() -> {
+            for (int i = 0; i < TASKS_PER_THREAD; i++) {
+                taskManager.createSubTask(createSubTask(epic, Status.DONE));
+            }
+        }, reader);
+
+        assertTrue(errors.isEmpty(), () -> errors.toString());
+        assertEquals(Status.DONE, taskManager.getEpicById(epic.getId()).getStatus());
+    }
+
+    @Test
+    void updateSubTask_shouldNotDeadlock_ifSubTasksAreMovedBetweenEpicsSharingLocksConcurrently()
+            throws InterruptedException {
+        // the epics of each pair share their locks crosswise, and the lower id of a pair maps to another lock
+        List<Thread> threads = List.of(
+                new Thread(moveBetweenEpics(createEpic(74), createEpic(129))),
+                new Thread(moveBetweenEpics(createEpic(65), createEpic(138)))
+        );
+        threads.forEach(thread -> {
+            thread.setDaemon(true);
+            thread.start();
+        });
+        for (Thread thread : threads) {
+            thread.join(10_000);
+            assertFalse(thread.isAlive());
+        }
+    }
+
+    private void runConcurrently(Runnable action, Thread... otherThreads) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>(List.of(otherThreads));
+        for (int i = 0; i < THREAD_COUNT; i++) {
+            threads.add(new Thread(action));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private Epic createEpic(int id) {
+        Epic epic = new Epic();
+        epic.setId(id);
+        taskManager.updateEpic(epic);
+        return epic;
+    }
+
+    private Runnable moveBetweenEpics(Epic firstEpic, Epic secondEpic) {
+        SubTask subTask = createSubTask(firstEpic, Status.NEW);
+        taskManager.createSubTask(subTask);
+
+        return () -> {
+            for (int i = 0; i < MOVES_PER_THREAD; i++) {
+                SubTask movedSubTask = createSubTask(i % 2 == 0 ? secondEpic : firstEpic, Status.NEW);
+                movedSubTask.setId(subTask.getId());
+                taskManager.updateSubTask(movedSubTask);
+            }
+        };
+    }
+
+    private Task createTask(LocalDateTime startTime) {
+        Task task = new Task();
+        task.setName("Задача");
+        task.setDescription("Описание задачи");
+        task.setStatus(Status.NEW);
+        task.setStartTime(startTime);
+        task.setDuration(startTime == null ? null : Duration.ofMinutes(30));
+        return task;
+    }
+
+    private SubTask createSubTask(Epic epic, Status status) {
+        SubTask subTask = new SubTask();
+        subTask.setName("Подзадача");
+        subTask.setDescription("Описание подзадачи");
+        subTask.setStatus(status);
+        subTask.setEpic(epic);
+        return subTask;
+    }
+}
@@ -2,6 +2,7 @@ package ru.yandex.practicum.tasktracker.manager;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import ru.yandex.practicum.tasktracker.manager.exception.ManagerSaveException;
 import ru.yandex.practicum.tasktracker.model.Epic;
 import ru.yandex.practicum.tasktracker.model.Status;
@@ -11,11 +12,14 @@ import ru.yandex.practicum.tasktracker.model.Task;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -24,6 +28,12 @@ class FileBackedTaskManagerTest extends InMemoryTaskManagerTest {
     private static final String EMPTY_FILE = "test/empty.csv";
     private static final String FILE_TO_SAVE = "test/save.csv";
     private static final String FILE_TO_LOAD = "test/load.csv";
+    private static final String JOURNAL_FILE = "journal.csv";
+    private static final String SNAPSHOT_FILE = "snapshot.csv";
+
+    @TempDir
+    Path directory;
+    private Path journalFile;
 
     @Override
     protected FileBackedTaskManager createTaskManager() {
@@ -34,6 +44,7 @@ class FileBackedTaskManagerTest extends InMemoryTaskManagerTest {
     @Override
     void setUp() throws IOException {
         Files.writeString(Path.of("resources/" + EMPTY_FILE), "");
+        journalFile = directory.resolve(JOURNAL_FILE);
         super.setUp();
     }
 
@@ -135,6 +146,298 @@ class FileBackedTaskManagerTest extends InMemoryTaskManagerTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    void save_shouldAppendChangesToTheJournal_inJournalMode() throws IOException {
+        Path journalPath = directory.resolve(JOURNAL_FILE + ".log");
+        Files.writeString(journalFile, "");
+        FileBackedTaskManager taskManager = FileBackedTaskManager.load(journalFile, StorageMode.JOURNAL);
+
+        task1.setStartTime(LocalDateTime.of(2022, 12, 22, 11, 0));
+        task1.setDuration(Duration.ofMinutes(30));
+        taskManager.createTask(task1);
+        taskManager.createEpic(epic1);
+        taskManager.createSubTask(subTask1);
+        taskManager.getTaskById(task1.getId());
+        taskManager.deleteSubTaskById(subTask1.getId());
+        taskManager.deleteTasks();
+
+        List<String> expected = List.of(
+                "PUT,1,TASK,Задача1,NEW,Описание задачи,22.12.2022 11:00,30,22.12.2022 11:30",
+                "PUT,2,EPIC,Эпик1,NEW,Описание эпика,,0,",
+                "PUT,3,SUBTASK,Подзадача1,NEW,Описание подзадачи,,0,,2",
+                "VIEW,1",
+                "DELETE,SUBTASK,3",
+                "CLEAR,TASK"
+        );
+        List<String> actual = Files.readAllLines(journalPath);
+
+        assertEquals(expected, actual);
+        assertEquals("", Files.readString(journalFile));
+    }
+
+    @Test
+    void load_shouldReplayTheJournalAfterTheSnapshot_inJournalMode() throws IOException {
+        Files.copy(Path.of("resources/" + FILE_TO_LOAD), journalFile, StandardCopyOption.REPLACE_EXISTING);
+        FileBackedTaskManager taskManager = FileBackedTaskManager.load(journalFile, StorageMode.JOURNAL);
+
+        Task task = taskManager.getTaskById(1);
+        task.setStatus(Status.DONE);
+        taskManager.updateTask(task);
+
+        SubTask subTask = createSubTask("Подзадача3", "Описание подзадачи", taskManager.getEpicById(4));
+        subTask.setStartTime(LocalDateTime.of(2022, 12, 22, 13, 0));
+        subTask.setDuration(Duration.ofMinutes(20));
+        subTask.setStatus(Status.IN_PROGRESS);
+        taskManager.createSubTask(subTask);
+
+        Epic epic = taskManager.getEpicById(3);
+        epic.setName("Обновленный эпик");
+        taskManager.updateEpic(epic);
+
+        taskManager.deleteTaskById(2);
+        taskManager.getSubTaskById(5);
+
+        FileBackedTaskManager restoredTaskManager = FileBackedTaskManager.load(journalFile, StorageMode.JOURNAL);
+
+        assertEquals(taskManager.getTasks(), restoredTaskManager.getTasks());
+        assertEquals(taskManager.getEpics(), restoredTaskManager.getEpics());
+        assertEquals(taskManager.getSubTasks(), restoredTaskManager.getSubTasks());
+        assertEquals(taskManager.getHistory(), restoredTaskManager.getHistory());
+        assertEquals(List.copyOf(taskManager.getPrioritizedTasks()),
+                List.copyOf(restoredTaskManager.getPrioritizedTasks()));
+        assertEquals(taskManager.getSubTasksByEpic(3), restoredTaskManager.getSubTasksByEpic(3));
+        assertEquals(taskManager.getSubTasksByEpic(4), restoredTaskManager.getSubTasksByEpic(4));
+        assertTrue(restoredTaskManager.nextTaskId == 7);
+    }
+
+    @Test
+    void save_shouldCompactTheJournalIntoTheFile_inJournalMode() throws IOException {
+        Path journalPath = directory.resolve(JOURNAL_FILE + ".log");
+        Files.writeString(journalFile, "");
+        FileBackedTaskManager taskManager = FileBackedTaskManager.load(journalFile, StorageMode.JOURNAL);
+
+        task1.setStartTime(LocalDateTime.of(2022, 12, 22, 11, 0));
+        task1.setDuration(Duration.ofMinutes(30));
+        taskManager.createTask(task1);
+        taskManager.createEpic(epic1);
+        taskManager.getTaskById(task1.getId());
+
+        taskManager.save();
+
+        String expected = "id,type,name,status,description,start_time,duration,end_time,epic,journal_generation=1"
+                + System.lineSeparator()
+                + "1,TASK,Задача1,NEW,Описание задачи,22.12.2022 11:00,30,22.12.2022 11:30"
+                + System.lineSeparator()
+                + "2,EPIC,Эпик1,NEW,Описание эпика,,0,"
+                + System.lineSeparator()
+                + System.lineSeparator()
+                + "1"
+                + System.lineSeparator();
+
+        assertEquals(expected, Files.readString(journalFile));
+        assertFalse(Files.exists(journalPath));
+        assertFalse(Files.exists(directory.resolve(JOURNAL_FILE + ".log.1")));
+        assertEquals(0, taskManager.getJournalRecordCount());
+
+        taskManager.getEpicById(epic1.getId());
+        FileBackedTaskManager restoredTaskManager = FileBackedTaskManager.load(journalFile, StorageMode.JOURNAL);
+
+        assertEquals(taskManager.getTasks(), restoredTaskManager.getTasks());
+        assertEquals(taskManager.getEpics(), restoredTaskManager.getEpics());
+        assertEquals(taskManager.getHistory(), restoredTaskManager.getHistory());
+    }
+
+    @Test
+    void load_shouldNotReplayTheJournalSegmentContainedInTheFile_inJournalMode() throws IOException {
+        Path segmentPath = directory.resolve(JOURNAL_FILE + ".log.1");
+        Files.writeString(journalFile, "");
+        FileBackedTaskManager taskManager = FileBackedTaskManager.load(journalFile, StorageMode.JOURNAL);
+
+        task1.setStartTime(LocalDateTime.of(2022, 12, 22, 11, 0));
+        task1.setDuration(Duration.ofMinutes(30));
+        taskManager.createTask(task1);
+        task2.setStartTime(LocalDateTime.of(2022, 12, 22, 12, 0));
+        task2.setDuration(Duration.ofMinutes(30));
+        taskManager.createTask(task2);
+
+        task1.setStartTime(LocalDateTime.of(2022, 12, 22, 13, 0));
+        taskManager.updateTask(task1);
+        task2.setStartTime(LocalDateTime.of(2022, 12, 22, 11, 0));
+        taskManager.updateTask(task2);
+
+        List<String> segment = Files.readAllLines(directory.resolve(JOURNAL_FILE + ".log"));
+        taskManager.save();
+        Files.write(segmentPath, segment);
+
+        FileBackedTaskManager restoredTaskManager = FileBackedTaskManager.load(journalFile, StorageMode.JOURNAL);
+
+        assertEquals(taskManager.getTasks(), restoredTaskManager.getTasks());
+        assertEquals(List.copyOf(taskManager.getPrioritizedTasks()),
+                List.copyOf(restoredTaskManager.getPrioritizedTasks()));
+        assertFalse(Files.exists(segmentPath));
+    }
+
+    @Test
+    void load_shouldSkipFilesThatAreNotJournalSegments_inJournalMode() throws IOException {
+        Path backupPath = directory.resolve(JOURNAL_FILE + ".log.bak");
+        Files.writeString(journalFile, "");
+        Files.writeString(backupPath, "PUT,1,TASK,Задача1,NEW,Описание задачи,,0,");
+        FileBackedTaskManager taskManager = FileBackedTaskManager.load(journalFile, StorageMode.JOURNAL);
+
+        taskManager.createTask(task1);
+
+        FileBackedTaskManager restoredTaskManager = FileBackedTaskManager.load(journalFile, StorageMode.JOURNAL);
+
+        assertEquals(List.of(task1), restoredTaskManager.getTasks());
+        assertTrue(Files.exists(backupPath));
+    }
+
+    @Test
+    void compactIfNeeded_shouldCompactTheJournal_ifItExceedsTheNumberOfRecords() throws IOException {
+        Path journalPath = directory.resolve(JOURNAL_FILE + ".log");
+        Files.writeString(journalFile, "");
+        FileBackedTaskManager taskManager = FileBackedTaskManager.load(journalFile, StorageMode.JOURNAL);
+        JournalCompactor compactor = new JournalCompactor(taskManager, Long.MAX_VALUE, 3,
+                Duration.ofSeconds(1));
+
+        taskManager.createTask(task1);
+        taskManager.createTask(task2);
+
+        assertFalse(compactor.compactIfNeeded());
+        assertTrue(Files.exists(journalPath));
+
+        taskManager.getTaskById(task1.getId());
+
+        assertTrue(compactor.compactIfNeeded());
+        assertFalse(Files.exists(journalPath));
+        assertEquals(List.of(task1, task2),
+                FileBackedTaskManager.load(journalFile, StorageMode.JOURNAL).getTasks());
+    }
+
+    @Test
+    void compactIfNeeded_shouldCompactTheJournal_ifItExceedsTheSize() throws IOException {
+        Path journalPath = directory.resolve(JOURNAL_FILE + ".log");
+        Files.writeString(journalFile, "");
+        FileBackedTaskManager taskManager = FileBackedTaskManager.load(journalFile, StorageMode.JOURNAL);
+        JournalCompactor compactor = new JournalCompactor(taskManager, 100, Integer.MAX_VALUE,
+                Duration.ofSeconds(1));
+
+        taskManager.createEpic(epic1);
+
+        assertFalse(compactor.compactIfNeeded());
+
+        taskManager.createEpic(epic2);
+        taskManager.createSubTask(subTask1);
+
+        assertTrue(taskManager.getJournalSize() >= 100);
+        assertTrue(compactor.compactIfNeeded());
+        assertEquals(0, taskManager.getJournalSize());
+        assertFalse(Files.exists(journalPath));
+    }
+
+    @Test
+    void createTask_shouldWriteTheRecordBeforeReturning_withGroupCommit() throws IOException {
+        Path journalPath = directory.resolve(JOURNAL_FILE + ".log");
+        Files.writeString(journalFile, "");
+
+        try (FileBackedTaskManager taskManager = FileBackedTaskManager.load(journalFile,
+                Duration.ofMillis(5), 100)) {
+            taskManager.createTask(task1);
+
+            assertEquals(List.of("PUT,1,TASK,Задача1,NEW,Описание задачи,,0,"), Files.readAllLines(journalPath));
+        }
+    }
+
+    @Test
+    void createTask_shouldWriteRecordsOfAllConcurrentCallers_withGroupCommit()
+            throws IOException, InterruptedException {
+        Files.writeString(journalFile, "");
+        FileBackedTaskManager taskManager = FileBackedTaskManager.load(journalFile, Duration.ofMillis(5), 16);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 25; j++) {
+                    taskManager.createTask(createTask("Задача", "Описание задачи"));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        taskManager.close();
+
+        FileBackedTaskManager restoredTaskManager = FileBackedTaskManager.load(journalFile, StorageMode.JOURNAL);
+
+        assertEquals(200, restoredTaskManager.getTasks().size());
+        assertEquals(taskManager.getTasks(), restoredTaskManager.getTasks());
+    }
+
+    @Test
+    void getTaskById_shouldNotRewriteTheFile_withOnShutdownHistoryFlush() throws IOException {
+        Path path = directory.resolve(SNAPSHOT_FILE);
+        Files.writeString(path, "");
+        FileBackedTaskManager taskManager = FileBackedTaskManager.load(path, StorageMode.SNAPSHOT);
+        taskManager.setHistoryFlushPolicy(HistoryFlushPolicy.ON_SHUTDOWN, Duration.ZERO);
+
+        taskManager.createTask(task1);
+        taskManager.createTask(task2);
+        String contentBeforeView = Files.readString(path);
+
+        taskManager.getTaskById(task2.getId());
+        taskManager.getTaskById(task1.getId());
+
+        assertEquals(contentBeforeView, Files.readString(path));
+
+        taskManager.close();
+
+        assertEquals(List.of(task2, task1), FileBackedTaskManager.load(path, StorageMode.SNAPSHOT).getHistory());
+    }
+
+    @Test
+    void flushHistory_shouldWriteViewRecordsInTheOrderOfTheLastView_withOnShutdownHistoryFlush()
+            throws IOException {
+        Path journalPath = directory.resolve(JOURNAL_FILE + ".log");
+        Files.writeString(journalFile, "");
+        FileBackedTaskManager taskManager = FileBackedTaskManager.load(journalFile, StorageMode.JOURNAL);
+        taskManager.setHistoryFlushPolicy(HistoryFlushPolicy.ON_SHUTDOWN, Duration.ZERO);
+
+        taskManager.createTask(task1);
+        taskManager.createTask(task2);
+        taskManager.getTaskById(task1.getId());
+        taskManager.getTaskById(task2.getId());
+        taskManager.getTaskById(task1.getId());
+
+        assertEquals(2, Files.readAllLines(journalPath).size());
+
+        taskManager.flushHistory();
+
+        assertEquals(List.of("VIEW,2", "VIEW,1"), Files.readAllLines(journalPath).subList(2, 4));
+        assertEquals(List.of(task2, task1),
+                FileBackedTaskManager.load(journalFile, StorageMode.JOURNAL).getHistory());
+    }
+
+    @Test
+    void getTaskById_shouldPersistTheHistoryInTheBackground_withPeriodicHistoryFlush()
+            throws IOException, InterruptedException {
+        Path journalPath = directory.resolve(JOURNAL_FILE + ".log");
+        Files.writeString(journalFile, "");
+        FileBackedTaskManager taskManager = FileBackedTaskManager.load(journalFile, StorageMode.JOURNAL);
+        taskManager.setHistoryFlushPolicy(HistoryFlushPolicy.PERIODIC, Duration.ofMillis(10));
+
+        taskManager.createTask(task1);
+        taskManager.getTaskById(task1.getId());
+
+        for (int i = 0; i < 100 && Files.readAllLines(journalPath).size() < 2; i++) {
+            Thread.sleep(10);
+        }
+        taskManager.close();
+
+        assertEquals("VIEW,1", Files.readAllLines(journalPath).get(1));
+    }
+
     @Test
     void load_shouldThrowAnException_ifTheFileIsNotFound() {
         ManagerSaveException exception = assertThrows(
@@ -3,7 +3,9 @@ package ru.yandex.practicum.tasktracker.manager;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.client.KVTaskClient;
 import ru.yandex.practicum.tasktracker.manager.exception.HttpRequestSendException;
+import ru.yandex.practicum.tasktracker.manager.exception.ManagerSaveConflictException;
 import ru.yandex.practicum.tasktracker.model.Epic;
 import ru.yandex.practicum.tasktracker.model.Status;
 import ru.yandex.practicum.tasktracker.model.SubTask;
@@ -13,9 +15,13 @@ import ru.yandex.practicum.tasktracker.server.KVServer;
 import java.io.IOException;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -51,6 +57,172 @@ class HttpTaskManagerTest extends InMemoryTaskManagerTest {
         );
     }
 
+    @Test
+    void save_shouldStoreEveryTaskUnderItsOwnKey() {
+        HttpTaskManager taskManager = HttpTaskManager.load(URL);
+        KVTaskClient client = new KVTaskClient(URL);
+
+        taskManager.createTask(task1);
+        taskManager.createTask(task2);
+        taskManager.getTaskById(task2.getId());
+
+        assertEquals("[1,2]", client.load("tasks.0"));
+        assertEquals("2", client.load("last-id"));
+        assertEquals(Managers.getDefaultGson().toJson(task1), client.load("task.1"));
+        assertEquals("1", client.load("history.2"));
+
+        task1.setStatus(Status.DONE);
+        taskManager.updateTask(task1);
+
+        assertEquals(Managers.getDefaultGson().toJson(task1), client.load("task.1"));
+
+        taskManager.deleteTaskById(task1.getId());
+
+        assertEquals("[2]", client.load("tasks.0"));
+        assertEquals("", client.load("task.1"));
+    }
+
+    @Test
+    void getTaskById_shouldSaveOnlyTheViewOfTheTask() {
+        HttpTaskManager taskManager = HttpTaskManager.load(URL);
+        KVTaskClient client = new KVTaskClient(URL);
+        List<String> keys = List.of("tasks.0", "last-id", "task.1", "task.2");
+
+        taskManager.createTask(task1);
+        taskManager.createTask(task2);
+        Map<String, Long> expectedVersions = getVersions(client, keys);
+
+        taskManager.getTaskById(task1.getId());
+        taskManager.getTaskById(task2.getId());
+        taskManager.getTaskById(task1.getId());
+
+        assertEquals(expectedVersions, getVersions(client, keys));
+        assertEquals("2", client.load("history.2"));
+        assertEquals("3", client.load("history.1"));
+        assertEquals(List.of(task2, task1), HttpTaskManager.load(URL).getHistory());
+    }
+
+    @Test
+    void getTaskById_shouldNotSaveAView_ifTheIdBelongsToAnEpic() {
+        HttpTaskManager taskManager = HttpTaskManager.load(URL);
+        KVTaskClient client = new KVTaskClient(URL);
+
+        taskManager.createEpic(epic1);
+        assertThrows(NullPointerException.class, () -> taskManager.getTaskById(epic1.getId()));
+        taskManager.createTask(task1);
+
+        assertEquals("", client.load("history." + epic1.getId()));
+        assertTrue(HttpTaskManager.load(URL).getHistory().isEmpty());
+    }
+
+    @Test
+    void whenSaved_shouldCompleteWhenAllChangesAreSaved_withAsyncSave() {
+        HttpTaskManager taskManager = HttpTaskManager.load(URL, true);
+
+        taskManager.createTask(task1);
+        taskManager.createEpic(epic1);
+        taskManager.createSubTask(subTask1);
+        for (Status status : Status.values()) {
+            task1.setStatus(status);
+            taskManager.updateTask(task1);
+        }
+        taskManager.getSubTaskById(subTask1.getId());
+        taskManager.whenSaved().join();
+
+        HttpTaskManager restoredTaskManager = HttpTaskManager.load(URL);
+
+        assertEquals(List.of(task1), restoredTaskManager.getTasks());
+        assertEquals(List.of(epic1), restoredTaskManager.getEpics());
+        assertEquals(List.of(subTask1), restoredTaskManager.getSubTasks());
+        assertEquals(List.of(subTask1), restoredTaskManager.getHistory());
+    }
+
+    @Test
+    void whenSaved_shouldCompleteExceptionally_ifTheServerIsNotAvailable() throws IOException {
+        HttpTaskManager taskManager = HttpTaskManager.load(URL, true);
+        kvServer.stop();
+
+        taskManager.createTask(task1);
+
+        CompletionException exception = assertThrows(
+                CompletionException.class,
+                () -> taskManager.whenSaved().join()
+        );
+        assertTrue(exception.getCause() instanceof HttpRequestSendException);
+
+        kvServer = new KVServer();
+        kvServer.start();
+    }
+
+    @Test
+    void whenSaved_shouldComplete_ifTheServerIsAvailableAgainBeforeTheRetry() throws IOException {
+        HttpTaskManager taskManager = HttpTaskManager.load(URL, true);
+        kvServer.stop();
+
+        taskManager.createTask(task1);
+        kvServer = new KVServer();
+        kvServer.start();
+
+        taskManager.whenSaved().join();
+        assertEquals(List.of(task1), HttpTaskManager.load(URL).getTasks());
+    }
+
+    @Test
+    void save_shouldSendTheChangesOfAFailedSaveWithTheNextSave() throws IOException {
+        HttpTaskManager taskManager = HttpTaskManager.load(URL);
+        kvServer.stop();
+
+        assertThrows(HttpRequestSendException.class, () -> taskManager.createTask(task1));
+
+        kvServer = new KVServer();
+        kvServer.start();
+        taskManager.createTask(task2);
+
+        HttpTaskManager restoredTaskManager = HttpTaskManager.load(URL);
+        assertEquals(List.of(task1, task2), restoredTaskManager.getTasks());
+    }
+
+    @Test
+    void save_shouldThrowAnException_ifAnotherManagerHasChangedTheData() {
+        HttpTaskManager taskManager = HttpTaskManager.load(URL);
+        HttpTaskManager otherTaskManager = HttpTaskManager.load(URL);
+
+        taskManager.createTask(task1);
+
+        assertThrows(ManagerSaveConflictException.class, () -> otherTaskManager.createTask(task2));
+        assertEquals(List.of(task1), HttpTaskManager.load(URL).getTasks());
+    }
+
+    @Test
+    void whenSaved_shouldCompleteExceptionally_ifAnotherManagerHasChangedTheData_withAsyncSave() {
+        HttpTaskManager taskManager = HttpTaskManager.load(URL);
+        HttpTaskManager otherTaskManager = HttpTaskManager.load(URL, true);
+
+        taskManager.createTask(task1);
+        otherTaskManager.createTask(task2);
+
+        CompletionException exception = assertThrows(
+                CompletionException.class,
+                () -> otherTaskManager.whenSaved().join()
+        );
+        assertTrue(exception.getCause() instanceof ManagerSaveConflictException);
+        assertThrows(ManagerSaveConflictException.class, otherTaskManager::close);
+        assertEquals(List.of(task1), HttpTaskManager.load(URL).getTasks());
+    }
+
+    @Test
+    void load_shouldNotSeeTasksOfAnotherToken_ifANewTokenIsRegistered() {
+        HttpTaskManager taskManager = HttpTaskManager.load(URL, null, false);
+        taskManager.createTask(task1);
+
+        HttpTaskManager otherTaskManager = HttpTaskManager.load(URL, null, false);
+
+        assertNotEquals(taskManager.getToken(), otherTaskManager.getToken());
+        assertTrue(otherTaskManager.getTasks().isEmpty());
+        assertTrue(HttpTaskManager.load(URL).getTasks().isEmpty());
+        assertEquals(List.of(task1), HttpTaskManager.load(URL, taskManager.getToken(), false).getTasks());
+    }
+
     @Test
     void load_shouldLoadTasksFromServerAndRestoreTaskListsAndHistory() {
         HttpTaskManager taskManager = HttpTaskManager.load(URL);
@@ -157,4 +329,10 @@ class HttpTaskManagerTest extends InMemoryTaskManagerTest {
         List<Task> actualPrioritizedTasks = List.copyOf(taskManager.getPrioritizedTasks());
         assertEquals(expectedPrioritizedTasks, actualPrioritizedTasks);
     }
+
+    private static Map<String, Long> getVersions(KVTaskClient client, List<String> keys) {
+        Map<String, Long> versions = new HashMap<>();
+        client.loadAllVersioned(keys).forEach((key, value) -> versions.put(key, value.getVersion()));
+        return versions;
+    }
 }
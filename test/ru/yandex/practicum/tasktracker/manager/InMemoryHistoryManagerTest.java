@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class InMemoryHistoryManagerTest {
@@ -74,6 +75,35 @@ class InMemoryHistoryManagerTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    void replace_shouldReplaceTaskAndKeepItsPosition() {
+        historyManager.add(task1);
+        historyManager.add(epic1);
+        historyManager.add(task2);
+
+        Task newTask1 = createTask(task1.getId());
+        newTask1.setName("Обновленная задача");
+        historyManager.replace(newTask1);
+
+        List<Task> expected = List.of(newTask1, epic1, task2);
+        List<Task> actual = historyManager.getHistory();
+
+        assertEquals(expected, actual);
+        assertTrue(actual.get(0) == newTask1);
+    }
+
+    @Test
+    void replace_shouldNotAddTask_ifTaskIsNotInHistory() {
+        historyManager.add(task1);
+
+        historyManager.replace(task2);
+
+        List<Task> expected = List.of(task1);
+        List<Task> actual = historyManager.getHistory();
+
+        assertEquals(expected, actual);
+    }
+
     @Test
     void remove_shouldRemoveTaskFromBeginningHistory() {
         historyManager.add(task1);
@@ -142,6 +172,42 @@ class InMemoryHistoryManagerTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    void add_shouldEvictTheLeastRecentlyViewedTask_ifHistoryIsFull() {
+        InMemoryHistoryManager boundedHistoryManager = new InMemoryHistoryManager(3);
+
+        boundedHistoryManager.add(task1);
+        boundedHistoryManager.add(task2);
+        boundedHistoryManager.add(epic1);
+        boundedHistoryManager.add(task1);
+        boundedHistoryManager.add(subTask1);
+
+        assertEquals(List.of(epic1, task1, subTask1), boundedHistoryManager.getHistory());
+
+        boundedHistoryManager.add(task2);
+
+        assertEquals(List.of(task1, subTask1, task2), boundedHistoryManager.getHistory());
+    }
+
+    @Test
+    void getHistory_shouldReturnPageOfHistory() {
+        historyManager.add(task1);
+        historyManager.add(task2);
+        historyManager.add(epic1);
+        historyManager.add(subTask1);
+
+        assertEquals(List.of(task2, epic1), historyManager.getHistory(1, 2));
+        assertEquals(List.of(subTask1), historyManager.getHistory(3, 10));
+        assertTrue(historyManager.getHistory(4, 10).isEmpty());
+        assertTrue(historyManager.getHistory(0, 0).isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> historyManager.getHistory(-1, 1));
+    }
+
+    @Test
+    void constructor_shouldThrowAnException_ifCapacityIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> new InMemoryHistoryManager(0));
+    }
+
     private void initTasks() {
         task1 = createTask(1);
         task2 = createTask(2);
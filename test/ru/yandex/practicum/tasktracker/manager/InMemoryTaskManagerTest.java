@@ -7,6 +7,7 @@ import ru.yandex.practicum.tasktracker.model.Epic;
 import ru.yandex.practicum.tasktracker.model.Status;
 import ru.yandex.practicum.tasktracker.model.SubTask;
 import ru.yandex.practicum.tasktracker.model.Task;
+import ru.yandex.practicum.tasktracker.model.TaskType;
 
 import java.io.IOException;
 import java.time.Duration;
@@ -16,6 +17,7 @@ import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -881,6 +883,78 @@ class InMemoryTaskManagerTest {
         assertEquals("Task execution time intersect with other tasks", exception.getMessage());
     }
 
+    @Test
+    void getType_shouldReturnTypeOfTaskById() {
+        taskManager.createTask(task1);
+        taskManager.createEpic(epic1);
+        taskManager.createSubTask(subTask1);
+
+        assertEquals(TaskType.TASK, taskManager.getType(task1.getId()));
+        assertEquals(TaskType.EPIC, taskManager.getType(epic1.getId()));
+        assertEquals(TaskType.SUBTASK, taskManager.getType(subTask1.getId()));
+        assertTrue(taskManager.getHistory().isEmpty());
+    }
+
+    @Test
+    void getHistory_shouldKeepSeparateHistoriesOfUsers() {
+        taskManager.createTask(task1);
+        taskManager.createEpic(epic1);
+        taskManager.createSubTask(subTask1);
+
+        taskManager.getTaskById(task1.getId(), "alice");
+        taskManager.getEpicById(epic1.getId(), "bob");
+        taskManager.getSubTaskById(subTask1.getId(), "alice");
+        taskManager.getTaskById(task1.getId(), "alice");
+
+        assertEquals(List.of(subTask1, task1), taskManager.getHistory("alice", 0, Integer.MAX_VALUE));
+        assertEquals(List.of(epic1), taskManager.getHistory("bob", 0, Integer.MAX_VALUE));
+        assertTrue(taskManager.getHistory("carol", 0, Integer.MAX_VALUE).isEmpty());
+        assertTrue(taskManager.getHistory().isEmpty());
+
+        taskManager.deleteTaskById(task1.getId());
+
+        assertEquals(List.of(subTask1), taskManager.getHistory("alice", 0, Integer.MAX_VALUE));
+    }
+
+    @Test
+    void getType_shouldReturnNull_ifTheTaskIsNotFound() {
+        taskManager.createTask(task1);
+        taskManager.deleteTaskById(task1.getId());
+
+        assertNull(taskManager.getType(task1.getId()));
+        assertNull(taskManager.getType(100));
+    }
+
+    @Test
+    void findTaskById_shouldReturnTaskOfAnyTypeWithoutAddingItToHistory() {
+        taskManager.createTask(task1);
+        taskManager.createEpic(epic1);
+        taskManager.createSubTask(subTask1);
+
+        assertEquals(task1, taskManager.findTaskById(task1.getId()));
+        assertEquals(epic1, taskManager.findTaskById(epic1.getId()));
+        assertEquals(subTask1, taskManager.findTaskById(subTask1.getId()));
+        assertNull(taskManager.findTaskById(100));
+        assertTrue(taskManager.getHistory().isEmpty());
+    }
+
+    @Test
+    void getHistory_shouldDropTheHistoryOfTheLeastRecentlyActiveUser_ifThereAreTooManyUsers() {
+        taskManager.createTask(task1);
+
+        taskManager.getTaskById(task1.getId(), "alice");
+        taskManager.getTaskById(task1.getId(), "bob");
+        for (int i = 0; i < 998; i++) {
+            taskManager.getTaskById(task1.getId(), "user" + i);
+        }
+        taskManager.getTaskById(task1.getId(), "alice");
+        taskManager.getTaskById(task1.getId(), "carol");
+
+        assertEquals(List.of(task1), taskManager.getHistory("alice", 0, Integer.MAX_VALUE));
+        assertTrue(taskManager.getHistory("bob", 0, Integer.MAX_VALUE).isEmpty());
+        assertEquals(List.of(task1), taskManager.getHistory("carol", 0, Integer.MAX_VALUE));
+    }
+
     protected void initTasks() {
         task1 = createTask("Задача1", "Описание задачи");
         task2 = createTask("Задача2", "Описание задачи");
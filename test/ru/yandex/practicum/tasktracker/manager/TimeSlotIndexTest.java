@@ -0,0 +1,84 @@
+package ru.yandex.practicum.tasktracker.manager;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.tasktracker.model.Task;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimeSlotIndexTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2022, 12, 22, 10, 0);
+
+    private final TimeSlotIndex timeSlots = new TimeSlotIndex();
+
+    @Test
+    void intersects_shouldReturnFalse_ifIndexIsEmpty() {
+        assertFalse(timeSlots.intersects(createTask(1, 0, 30)));
+    }
+
+    @Test
+    void intersects_shouldReturnFalse_ifTaskHasNoStartTime() {
+        timeSlots.add(createTask(1, 0, 30));
+
+        assertFalse(timeSlots.intersects(new Task()));
+    }
+
+    @Test
+    void intersects_shouldReturnTrue_ifTimeSlotsIntersect() {
+        for (int i = 0; i < 1000; i++) {
+            timeSlots.add(createTask(i + 1, i * 60, 30));
+        }
+
+        assertTrue(timeSlots.intersects(createTask(2000, 10, 10)));
+        assertTrue(timeSlots.intersects(createTask(2000, 500 * 60 + 20, 60)));
+        assertTrue(timeSlots.intersects(createTask(2000, -10, 20)));
+        assertTrue(timeSlots.intersects(createTask(2000, 0, 100_000)));
+    }
+
+    @Test
+    void intersects_shouldReturnFalse_ifTimeSlotsAdjoin() {
+        for (int i = 0; i < 1000; i++) {
+            timeSlots.add(createTask(i + 1, i * 60, 30));
+        }
+
+        assertFalse(timeSlots.intersects(createTask(2000, 30, 30)));
+        assertFalse(timeSlots.intersects(createTask(2000, 500 * 60 + 30, 30)));
+        assertFalse(timeSlots.intersects(createTask(2000, -30, 30)));
+        assertFalse(timeSlots.intersects(createTask(2000, 1000 * 60, 30)));
+    }
+
+    @Test
+    void remove_shouldReleaseTheTimeSlot() {
+        timeSlots.add(createTask(1, 0, 30));
+        timeSlots.add(createTask(2, 60, 30));
+
+        timeSlots.remove(1);
+
+        assertFalse(timeSlots.intersects(createTask(3, 0, 30)));
+        assertTrue(timeSlots.intersects(createTask(3, 70, 30)));
+    }
+
+    @Test
+    void add_shouldReplaceThePreviousTimeSlotOfTheTask() {
+        Task task = createTask(1, 0, 30);
+        timeSlots.add(task);
+
+        task.setStartTime(START.plusMinutes(120));
+        timeSlots.add(task);
+
+        assertFalse(timeSlots.intersects(createTask(2, 0, 30)));
+        assertTrue(timeSlots.intersects(createTask(2, 130, 30)));
+    }
+
+    private Task createTask(int id, long startMinutes, long durationMinutes) {
+        Task task = new Task();
+        task.setId(id);
+        task.setStartTime(START.plusMinutes(startMinutes));
+        task.setDuration(Duration.ofMinutes(durationMinutes));
+        return task;
+    }
+}
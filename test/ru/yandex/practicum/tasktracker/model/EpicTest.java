@@ -198,6 +198,75 @@ class EpicTest {
         assertEquals(expected, epic1.getEndTime());
     }
 
+    @Test
+    void getStatus_shouldFollowSubtaskChanges_afterTheStatusWasCalculated() {
+        assertTrue(epic1.getStatus() == Status.NEW);
+
+        subTask1.setStatus(Status.DONE);
+        subTask2.setStatus(Status.DONE);
+        assertTrue(epic1.getStatus() == Status.IN_PROGRESS);
+
+        subTask3.setStatus(Status.DONE);
+        assertTrue(epic1.getStatus() == Status.DONE);
+
+        subTask2.setStatus(Status.NEW);
+        assertTrue(epic1.getStatus() == Status.IN_PROGRESS);
+    }
+
+    @Test
+    void removeSubTask_shouldRecalculateTheStatusAndTimeOfTheEpic() {
+        LocalDateTime startTime1 = LocalDateTime.of(2022, 12, 22, 12, 0);
+        LocalDateTime startTime2 = LocalDateTime.of(2022, 12, 22, 13, 0);
+
+        SubTask subTask4 = createSubTask("Подзадача4", "Описание подзадачи", epic2);
+        subTask4.setStatus(Status.DONE);
+        subTask4.setStartTime(startTime1);
+        subTask4.setDuration(Duration.ofMinutes(15));
+        SubTask subTask5 = createSubTask("Подзадача5", "Описание подзадачи", epic2);
+        subTask5.setStartTime(startTime2);
+        subTask5.setDuration(Duration.ofMinutes(30));
+
+        assertTrue(epic2.getStatus() == Status.NEW);
+
+        epic2.addSubTask(subTask4);
+        epic2.addSubTask(subTask5);
+
+        assertTrue(epic2.getStatus() == Status.IN_PROGRESS);
+        assertEquals(startTime1, epic2.getStartTime());
+        assertEquals(startTime2.plusMinutes(30), epic2.getEndTime());
+        assertEquals(Duration.ofMinutes(45), epic2.getDuration());
+
+        epic2.removeSubTask(subTask5);
+
+        assertTrue(epic2.getStatus() == Status.DONE);
+        assertEquals(startTime1, epic2.getStartTime());
+        assertEquals(startTime1.plusMinutes(15), epic2.getEndTime());
+        assertEquals(Duration.ofMinutes(15), epic2.getDuration());
+
+        epic2.removeSubTask(subTask4);
+
+        assertTrue(epic2.getStatus() == Status.NEW);
+        assertNull(epic2.getStartTime());
+        assertNull(epic2.getEndTime());
+        assertNull(epic2.getDuration());
+    }
+
+    @Test
+    void clearSubTasks_shouldResetTheStatusAndTimeOfTheEpic() {
+        subTask1.setStatus(Status.DONE);
+        subTask1.setStartTime(LocalDateTime.of(2022, 12, 22, 12, 0));
+        subTask1.setDuration(Duration.ofMinutes(15));
+
+        assertTrue(epic1.getStatus() == Status.IN_PROGRESS);
+
+        epic1.clearSubTasks();
+
+        assertTrue(epic1.getStatus() == Status.NEW);
+        assertNull(epic1.getStartTime());
+        assertNull(epic1.getEndTime());
+        assertNull(epic1.getDuration());
+    }
+
     private void initTasks() {
         epic1 = createEpic("Эпик1", "Описание эпика");
         epic2 = createEpic("Эпик2", "Описание эпика");
@@ -19,7 +19,9 @@ import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -94,6 +96,59 @@ class HttpTaskServerTest {
         assertEquals(expected, actual);
     }
 
+    @Test
+    void getHistory_shouldReturnPageOfHistory_ifOffsetAndLimitAreGiven() throws IOException, InterruptedException {
+        taskManager.createTask(task1);
+        taskManager.createTask(task2);
+        taskManager.createEpic(epic1);
+
+        taskManager.getTaskById(task1.getId());
+        taskManager.getTaskById(task2.getId());
+        taskManager.getEpicById(epic1.getId());
+
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/tasks/history/?offset=1&limit=1"))
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        List<Task> actual = taskGson.fromJson(response.body(), new TypeToken<List<Task>>(){}.getType());
+        assertEquals(List.of(task2), actual);
+
+        request = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/tasks/history/?offset=-1"))
+                .GET()
+                .build();
+        response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(400, response.statusCode());
+    }
+
+    @Test
+    void getHistory_shouldReturnHistoryOfTheUser_ifTheUserIsGiven() throws IOException, InterruptedException {
+        taskManager.createTask(task1);
+        taskManager.createTask(task2);
+
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/tasks/task/?id=" + task2.getId()))
+                .header("X-User", "alice")
+                .GET()
+                .build();
+        client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        request = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/tasks/history/?user=alice"))
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        List<Task> actual = taskGson.fromJson(response.body(), new TypeToken<List<Task>>(){}.getType());
+        assertEquals(List.of(task2), actual);
+        assertTrue(taskManager.getHistory().isEmpty());
+    }
+
     @Test
     void getTasks_shouldReturnEmptyListOfTasks() throws IOException, InterruptedException {
         URI uri = URI.create(URL + "/tasks/task/");
@@ -279,6 +334,27 @@ class HttpTaskServerTest {
         assertEquals("Task with the specified ID was not found", response.body());
     }
 
+    @Test
+    void getTaskById_shouldReturnResponseBadRequest_onlyIfTheIdIsOutOfTheIntRange()
+            throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/tasks/task/?id=2000000000"))
+                .GET()
+                .build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(404, response.statusCode());
+
+        request = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/tasks/task/?id=2147483648"))
+                .GET()
+                .build();
+        response = client.send(request, HttpResponse.BodyHandlers.ofString());
+
+        assertEquals(400, response.statusCode());
+    }
+
     @Test
     void getEpicById_shouldReturnEpicById() throws IOException, InterruptedException {
         taskManager.createEpic(epic1);
@@ -1108,6 +1184,40 @@ class HttpTaskServerTest {
         assertEquals("Endpoint not allowed", response.body());
     }
 
+    @Test
+    void postTask_shouldCreateAllTasks_withFixedPoolExecutor() throws IOException, InterruptedException {
+        assertAllConcurrentRequestsHandled(ExecutorMode.FIXED_POOL);
+    }
+
+    @Test
+    void postTask_shouldCreateAllTasks_withThreadPerRequestExecutor() throws IOException, InterruptedException {
+        assertAllConcurrentRequestsHandled(ExecutorMode.THREAD_PER_REQUEST);
+    }
+
+    private void assertAllConcurrentRequestsHandled(ExecutorMode executorMode)
+            throws IOException, InterruptedException {
+        httpTaskServer.stop();
+        TaskManager concurrentTaskManager = Managers.getConcurrent();
+        httpTaskServer = new HttpTaskServer(concurrentTaskManager, executorMode);
+        httpTaskServer.start();
+
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(URL + "/tasks/task/"))
+                .POST(HttpRequest.BodyPublishers.ofString(defaultGson.toJson(task1)))
+                .build();
+
+        List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString()));
+        }
+
+        for (CompletableFuture<HttpResponse<String>> response : responses) {
+            assertEquals(201, response.join().statusCode());
+        }
+        assertEquals(50, concurrentTaskManager.getTasks().size());
+    }
+
     private void initTasks() {
         task1 = createTask("Задача1", "Описание задачи");
         task2 = createTask("Задача2", "Описание задачи");
@@ -0,0 +1,74 @@
+package ru.yandex.practicum.tasktracker.server;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KVBatchFormatTest {
+
+    @Test
+    void readValues_shouldReturnTheValuesAsTheyWereWritten() throws IOException {
+        Map<String, KVBatchFormat.Entry> values = new LinkedHashMap<>();
+        values.put("ключ", new KVBatchFormat.Entry(bytes("{\"name\":\"Задача 🚀\"}"), 3));
+        values.put("deleted", new KVBatchFormat.Entry(null, KVBatchFormat.ANY_VERSION));
+        values.put("empty", new KVBatchFormat.Entry(new byte[0], 0));
+
+        Map<String, KVBatchFormat.Entry> actual = KVBatchFormat.readValues(
+                new ByteArrayInputStream(KVBatchFormat.writeValues(values)));
+
+        assertEquals(List.of("ключ", "deleted", "empty"), List.copyOf(actual.keySet()));
+        assertArrayEquals(values.get("ключ").getValue(), actual.get("ключ").getValue());
+        assertEquals(3, actual.get("ключ").getVersion());
+        assertNull(actual.get("deleted").getValue());
+        assertEquals(KVBatchFormat.ANY_VERSION, actual.get("deleted").getVersion());
+        assertArrayEquals(new byte[0], actual.get("empty").getValue());
+    }
+
+    @Test
+    void readVersions_shouldReturnTheVersionsAsTheyWereWritten() throws IOException {
+        Map<String, Long> versions = Map.of("task.1", 5L, "task.2", 0L);
+
+        assertEquals(versions, KVBatchFormat.readVersions(
+                new ByteArrayInputStream(KVBatchFormat.writeVersions(versions))));
+    }
+
+    @Test
+    void readKeys_shouldReturnTheKeysAsTheyWereWritten() throws IOException {
+        List<String> keys = List.of("tasks", "task.1", "ключ");
+
+        assertEquals(keys, KVBatchFormat.readKeys(new ByteArrayInputStream(KVBatchFormat.writeKeys(keys))));
+    }
+
+    @Test
+    void readValues_shouldThrowAnException_ifTheBatchIsTruncated() {
+        byte[] batch = KVBatchFormat.writeValues(Map.of("key", new KVBatchFormat.Entry(bytes("value"), 1)));
+        byte[] truncatedBatch = Arrays.copyOf(batch, batch.length - 1);
+
+        assertThrows(EOFException.class,
+                () -> KVBatchFormat.readValues(new ByteArrayInputStream(truncatedBatch)));
+    }
+
+    @Test
+    void readKeys_shouldThrowAnException_ifTheLengthIsNegative() {
+        byte[] batch = ByteBuffer.allocate(Integer.BYTES * 2).putInt(1).putInt(-5).array();
+
+        assertThrows(IOException.class, () -> KVBatchFormat.readKeys(new ByteArrayInputStream(batch)));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,275 @@
+package ru.yandex.practicum.tasktracker.server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KVStorageTest {
+
+    private KVStorage storage;
+
+    @BeforeEach
+    void setUp() {
+        storage = new KVStorage();
+    }
+
+    @Test
+    void put_shouldGiveTheValueANewVersion() {
+        long firstVersion = storage.put("key", bytes("value1")).getVersion();
+        long secondVersion = storage.put("key", bytes("value2")).getVersion();
+
+        assertTrue(secondVersion > firstVersion);
+        assertEquals("value2", text(storage.get("key")));
+        assertEquals(secondVersion, storage.get("key").getVersion());
+    }
+
+    @Test
+    void put_shouldNotReuseVersions_ifTheKeyWasDeleted() {
+        long firstVersion = storage.put("key", bytes("value")).getVersion();
+        storage.remove("key");
+
+        assertNull(storage.get("key"));
+        assertTrue(storage.put("key", bytes("value")).getVersion() > firstVersion);
+    }
+
+    @Test
+    void putIfVersion_shouldSaveTheValue_onlyIfTheVersionIsCurrent() {
+        long version = storage.putIfVersion("key", bytes("value1"), 0).getVersion();
+
+        assertNull(storage.putIfVersion("key", bytes("value2"), 0));
+        assertNull(storage.putIfVersion("key", bytes("value2"), version + 1));
+        assertEquals("value1", text(storage.get("key")));
+
+        assertEquals("value2", text(storage.putIfVersion("key", bytes("value2"), version)));
+        assertEquals("value2", text(storage.get("key")));
+    }
+
+    @Test
+    void getSize_shouldCountKeysAndValues() {
+        storage.put("key1", bytes("value1"));
+        storage.put("key1", bytes("value"));
+        storage.putAll(Map.of("key2", bytes("value2")));
+
+        assertEquals(2 * (4 * Character.BYTES) + 5 + 6, storage.getSize());
+
+        storage.remove("key1");
+        storage.putAll(Collections.singletonMap("key2", null));
+
+        assertEquals(0, storage.getSize());
+    }
+
+    @Test
+    void putAll_shouldSaveAndDeleteValues() {
+        storage.put("key1", bytes("value1"));
+
+        Map<String, byte[]> values = new HashMap<>();
+        values.put("key1", null);
+        values.put("key2", bytes("value2"));
+        storage.putAll(values);
+
+        Map<String, KVStorage.VersionedValue> actual = storage.getAll(List.of("key1", "key2"));
+
+        assertEquals(1, actual.size());
+        assertEquals("value2", text(actual.get("key2")));
+    }
+
+    @Test
+    void putAllIfVersions_shouldSaveNothing_ifAKeyHasAnotherVersion() {
+        long version = storage.put("key1", bytes("value1")).getVersion();
+
+        Map<String, byte[]> values = new HashMap<>();
+        values.put("key1", null);
+        values.put("key2", bytes("value2"));
+
+        assertNull(storage.putAllIfVersions(values, Map.of("key1", version, "key2", version)));
+        assertEquals("value1", text(storage.get("key1")));
+        assertNull(storage.get("key2"));
+
+        Map<String, Long> versions = storage.putAllIfVersions(values, Map.of("key1", version, "key2", 0L));
+
+        assertEquals(0L, versions.get("key1"));
+        assertEquals(storage.get("key2").getVersion(), versions.get("key2"));
+        assertNull(storage.get("key1"));
+    }
+
+    @Test
+    void put_shouldKeepAllValues_ifCalledConcurrently() throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int thread = i;
+            threads.add(new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    storage.put(thread + "." + j, bytes("value"));
+                    storage.put("shared", bytes(thread + "." + j));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 1000; j++) {
+                keys.add(i + "." + j);
+            }
+        }
+
+        assertEquals(8000, storage.getAll(keys).size());
+        assertEquals(16001, storage.put("last", bytes("value")).getVersion());
+    }
+
+    @Test
+    void getAll_shouldSeeABatchAsAWhole_ifBatchesAreSavedConcurrently() throws InterruptedException {
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 1000; i++) {
+                storage.putAll(Map.of("key1", bytes("value" + i), "key2", bytes("value" + i)));
+            }
+        });
+        List<String> errors = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            readers.add(new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    Map<String, KVStorage.VersionedValue> values = storage.getAll(List.of("key1", "key2"));
+                    if (values.size() == 2 && !text(values.get("key1")).equals(text(values.get("key2")))) {
+                        errors.add(text(values.get("key1")) + " != " + text(values.get("key2")));
+                    }
+                }
+            }));
+        }
+
+        writer.start();
+        readers.forEach(Thread::start);
+        writer.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertTrue(errors.isEmpty(), errors::toString);
+    }
+
+    @Test
+    void open_shouldRecoverValuesAndVersions_withDurableStorage(@TempDir Path directory) throws IOException {
+        KVStorage durableStorage = openDurableStorage(directory, Long.MAX_VALUE);
+        durableStorage.put("key1", bytes("value1"));
+        durableStorage.put("key2", bytes("value2"));
+        durableStorage.remove("key1");
+        durableStorage.putAll(Map.of("key3", bytes("value3")));
+        long lastVersion = durableStorage.put("key2", bytes("значение")).getVersion();
+        durableStorage.close();
+
+        KVStorage recoveredStorage = openDurableStorage(directory, Long.MAX_VALUE);
+
+        assertNull(recoveredStorage.get("key1"));
+        assertEquals("значение", text(recoveredStorage.get("key2")));
+        assertEquals(lastVersion, recoveredStorage.get("key2").getVersion());
+        assertEquals("value3", text(recoveredStorage.get("key3")));
+        assertTrue(recoveredStorage.put("key4", bytes("value4")).getVersion() > lastVersion);
+        recoveredStorage.close();
+    }
+
+    @Test
+    void open_shouldRecoverValuesFromTheSnapshot_ifTheLogWasCompacted(@TempDir Path directory)
+            throws IOException {
+        KVStorage durableStorage = openDurableStorage(directory, 256);
+        for (int i = 0; i < 100; i++) {
+            durableStorage.put("key" + i % 10, bytes("value" + i));
+        }
+        durableStorage.close();
+
+        assertTrue(Files.size(directory.resolve("kv.log")) < 256);
+
+        KVStorage recoveredStorage = openDurableStorage(directory, 256);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("value" + (90 + i), text(recoveredStorage.get("key" + i)));
+        }
+        recoveredStorage.close();
+    }
+
+    @Test
+    void open_shouldNotReuseTheVersionOfADeletedKey_withDurableStorage(@TempDir Path directory)
+            throws IOException {
+        KVStorage durableStorage = openDurableStorage(directory, Long.MAX_VALUE);
+        durableStorage.put("key1", bytes("value1"));
+        long deletedVersion = durableStorage.put("key2", bytes("value2")).getVersion();
+        durableStorage.remove("key2");
+        durableStorage.close();
+
+        KVStorage recoveredStorage = openDurableStorage(directory, Long.MAX_VALUE);
+
+        assertTrue(recoveredStorage.put("key2", bytes("value2")).getVersion() > deletedVersion);
+        recoveredStorage.close();
+    }
+
+    @Test
+    void open_shouldNotReuseTheVersionOfADeletedKey_ifTheLogWasCompacted(@TempDir Path directory)
+            throws IOException {
+        // the delete record brings the log over the maximum size, so only the snapshot keeps the last version
+        KVStorage durableStorage = openDurableStorage(directory, 90);
+        durableStorage.put("key1", bytes("value1"));
+        long deletedVersion = durableStorage.put("key2", bytes("value2")).getVersion();
+        durableStorage.remove("key2");
+        durableStorage.close();
+
+        assertEquals(0, Files.size(directory.resolve("kv.log")));
+
+        KVStorage recoveredStorage = openDurableStorage(directory, 90);
+
+        assertEquals("value1", text(recoveredStorage.get("key1")));
+        assertTrue(recoveredStorage.putIfVersion("key2", bytes("value2"), 0).getVersion() > deletedVersion);
+        recoveredStorage.close();
+    }
+
+    @Test
+    void open_shouldDropATornRecord_atTheEndOfTheLog(@TempDir Path directory) throws IOException {
+        KVStorage durableStorage = openDurableStorage(directory, Long.MAX_VALUE);
+        durableStorage.put("key1", bytes("value1"));
+        durableStorage.close();
+
+        Files.write(directory.resolve("kv.log"), new byte[] {0, 0, 0, 100, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        KVStorage recoveredStorage = openDurableStorage(directory, Long.MAX_VALUE);
+        recoveredStorage.put("key2", bytes("value2"));
+        recoveredStorage.close();
+
+        KVStorage reopenedStorage = openDurableStorage(directory, Long.MAX_VALUE);
+
+        assertEquals("value1", text(reopenedStorage.get("key1")));
+        assertEquals("value2", text(reopenedStorage.get("key2")));
+        reopenedStorage.close();
+    }
+
+    private static KVStorage openDurableStorage(Path directory, long maxLogSize) throws IOException {
+        KVStorage durableStorage = new KVStorage(new KVLog(directory, FsyncPolicy.EVERY_WRITE,
+                Duration.ofSeconds(1), maxLogSize));
+        durableStorage.open();
+        return durableStorage;
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(KVStorage.VersionedValue value) {
+        return new String(value.getValue(), StandardCharsets.UTF_8);
+    }
+}
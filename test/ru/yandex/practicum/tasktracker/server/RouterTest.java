@@ -0,0 +1,68 @@
+package ru.yandex.practicum.tasktracker.server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RouterTest {
+
+    private Router router;
+
+    @BeforeEach
+    void setUp() {
+        router = new Router()
+                .add("/tasks/task/", Endpoint.GET_TASKS)
+                .add("/tasks/task/", Endpoint.POST_TASK)
+                .addWithId("/tasks/task/", Endpoint.GET_TASK_BY_ID)
+                .addWithId("/tasks/task/", Endpoint.DELETE_TASK_BY_ID);
+    }
+
+    @Test
+    void resolve_shouldReturnEndpointByPathAndRequestMethod() {
+        assertEquals(Endpoint.GET_TASKS, router.resolve("/tasks/task/", null, "GET"));
+        assertEquals(Endpoint.POST_TASK, router.resolve("/tasks/task/", null, "POST"));
+    }
+
+    @Test
+    void resolve_shouldReturnEndpointWithId_ifTheQueryContainsAnId() {
+        assertEquals(Endpoint.GET_TASK_BY_ID, router.resolve("/tasks/task/", "id=12", "GET"));
+        assertEquals(Endpoint.DELETE_TASK_BY_ID, router.resolve("/tasks/task/", "id=12", "DELETE"));
+        assertEquals(12, Router.getId("id=12"));
+    }
+
+    @Test
+    void resolve_shouldReturnEndpointWithId_ifTheIdIsOutOfTheIntRange() {
+        assertEquals(Endpoint.GET_TASK_BY_ID, router.resolve("/tasks/task/", "id=2147483647", "GET"));
+        assertEquals(Integer.MAX_VALUE, Router.getId("id=2147483647"));
+        assertFalse(Router.isIdOutOfRange("id=2147483647"));
+
+        assertEquals(Endpoint.GET_TASK_BY_ID, router.resolve("/tasks/task/", "id=2147483648", "GET"));
+        assertTrue(Router.isIdOutOfRange("id=2147483648"));
+        assertTrue(Router.isIdOutOfRange("id=99999999999999999999"));
+        assertFalse(Router.isIdOutOfRange(null));
+        assertFalse(Router.isIdOutOfRange("offset=99999999999999999999"));
+    }
+
+    @Test
+    void resolve_shouldReturnEndpointWithQuery_ifTheQueryIsNotAnId() {
+        router.add("/tasks/history/", Endpoint.GET_HISTORY)
+                .addWithQuery("/tasks/history/", Endpoint.GET_HISTORY_PAGE);
+
+        assertEquals(Endpoint.GET_HISTORY, router.resolve("/tasks/history/", null, "GET"));
+        assertEquals(Endpoint.GET_HISTORY_PAGE, router.resolve("/tasks/history/", "offset=1&limit=2", "GET"));
+        assertEquals(Endpoint.UNKNOWN, router.resolve("/tasks/history/", "id=1", "GET"));
+    }
+
+    @Test
+    void resolve_shouldReturnUnknown_ifThereIsNoRoute() {
+        assertEquals(Endpoint.UNKNOWN, router.resolve("/tasks/not_found/", null, "GET"));
+        assertEquals(Endpoint.UNKNOWN, router.resolve("/tasks/task/", null, "DELETE"));
+        assertEquals(Endpoint.UNKNOWN, router.resolve("/tasks/task/", "id=12", "POST"));
+        assertEquals(Endpoint.UNKNOWN, router.resolve("/tasks/task/", "id=", "GET"));
+        assertEquals(Endpoint.UNKNOWN, router.resolve("/tasks/task/", "id=1a", "GET"));
+        assertEquals(Endpoint.UNKNOWN, router.resolve("/tasks/task/", "name=1", "GET"));
+    }
+}